@@ -0,0 +1,103 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.benchmarks;
+
+import org.cryptool.ctts.cryptanalysis.CryptanalysisParameters;
+import org.cryptool.ctts.grams.Corpus;
+import org.cryptool.ctts.grams.Language;
+import org.cryptool.ctts.grams.NgramModel;
+import org.cryptool.ctts.grams.Scorer;
+import org.cryptool.ctts.grams.SparseNgramModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of one n-gram window evaluation (the innermost operation of the SA moves): the generic loop over n, as used
+// before by IncrementalScorer, against the unrolled Scorer for the same n. Sparse models for all n, so that only the
+// window code differs between n.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScorerBenchmark {
+
+    private static final int LENGTH = 10_000;
+    private static final int HOMOPHONES = 100;
+
+    @Param({"3", "4", "5", "6", "7", "8"})
+    public int n;
+
+    private Scorer loop;
+    private Scorer unrolled;
+    private int[] cArray;
+    private int[] cToP;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        CryptanalysisParameters parameters = new CryptanalysisParameters(Language.LATIN);
+        parameters.readCorpus();
+        Corpus corpus = parameters.corpus();
+        NgramModel model = SparseNgramModel.stats(corpus, n);
+        loop = Scorer.loop(model);
+        unrolled = Scorer.of(model);
+
+        SplittableRandom random = new SplittableRandom(n);
+        cArray = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            cArray[i] = random.nextInt(HOMOPHONES);
+        }
+        cToP = new int[HOMOPHONES];
+        for (int c = 0; c < HOMOPHONES; c++) {
+            cToP[c] = random.nextInt(corpus.dim());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public double loop() {
+        return windows(loop);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public double unrolled() {
+        return windows(unrolled);
+    }
+
+    private double windows(Scorer scorer) {
+        double sum = 0;
+        for (int end = n - 1; end < LENGTH; end++) {
+            sum += scorer.window(cArray, cToP, end);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.benchmarks;
+
+import org.cryptool.ctts.cryptanalysis.SimulatedAnnealing;
+import org.cryptool.ctts.grams.IncrementalScorer;
+import org.cryptool.ctts.grams.Ngrams5;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput = evaluations (full scores or SA moves) per second, AverageTime = latency per evaluation.
+// Run with BenchmarkMain (or -prof gc) for the allocation rate.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    // One SA worker: its own key, scorer and random generator, at a fixed mid-range temperature.
+    @State(Scope.Thread)
+    public static class Worker {
+        IncrementalScorer scorer;
+        int[] cToP;
+        double[] pCounts;
+        SplittableRandom random;
+        double current;
+        double temp = 1_000;
+
+        @Setup(Level.Iteration)
+        public void setup(SyntheticCipher cipher) {
+            random = new SplittableRandom(7);
+            cToP = cipher.randomKey(random);
+            pCounts = new double[cipher.dim];
+            scorer = new IncrementalScorer(cipher.model, cipher.cArray, cipher.cListSize());
+            current = scorer.reset(cToP);
+        }
+    }
+
+    @Benchmark
+    public double fullScoreLegacy(SyntheticCipher cipher, Worker worker) {
+        return Ngrams5.score(worker.cToP, cipher.cArray, cipher.stats5, cipher.dim, worker.pCounts);
+    }
+
+    @Benchmark
+    public double fullScore(Worker worker) {
+        return worker.scorer.reset(worker.cToP);
+    }
+
+    // Same as the assignment move loop in Cryptanalysis.SA: assign, accept or revert.
+    @Benchmark
+    public double assignMove(SyntheticCipher cipher, Worker worker) {
+        IncrementalScorer scorer = worker.scorer;
+        int c = worker.random.nextInt(cipher.cListSize());
+        int p = worker.random.nextInt(cipher.dim);
+        int previousP = scorer.p(c);
+        double score = scorer.assign(c, p);
+        if (SimulatedAnnealing.accept(score, worker.current, worker.temp, worker.random)) {
+            worker.current = score;
+        } else {
+            scorer.assign(c, previousP);
+        }
+        return worker.current;
+    }
+
+    // Same as the swap move loop in Cryptanalysis.SA.
+    @Benchmark
+    public double swapMove(SyntheticCipher cipher, Worker worker) {
+        IncrementalScorer scorer = worker.scorer;
+        int c1 = worker.random.nextInt(cipher.cListSize());
+        int c2 = worker.random.nextInt(cipher.cListSize());
+        double score = scorer.swap(c1, c2);
+        if (SimulatedAnnealing.accept(score, worker.current, worker.temp, worker.random)) {
+            worker.current = score;
+        } else {
+            scorer.swap(c1, c2);
+        }
+        return worker.current;
+    }
+
+    @Benchmark
+    public boolean accept(Worker worker) {
+        return SimulatedAnnealing.accept(worker.current - worker.random.nextInt(5_000), worker.current, worker.temp, worker.random);
+    }
+}
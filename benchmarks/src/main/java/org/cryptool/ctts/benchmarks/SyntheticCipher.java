@@ -0,0 +1,125 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.benchmarks;
+
+import org.cryptool.ctts.cryptanalysis.Cryptanalysis;
+import org.cryptool.ctts.cryptanalysis.CryptanalysisParameters;
+import org.cryptool.ctts.grams.Corpus;
+import org.cryptool.ctts.grams.Language;
+import org.cryptool.ctts.grams.NgramModel;
+import org.cryptool.ctts.grams.Ngrams5;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+// Homophonic encryption of a slice of the real reference corpus, with homophones allocated to letters in proportion
+// to their frequency. Fixed seeds, so all runs (and releases) measure the same ciphertexts.
+@State(Scope.Benchmark)
+public class SyntheticCipher {
+
+    @Param({"FRENCH", "LATIN"})
+    public Language language;
+
+    @Param({"1000", "10000", "100000"})
+    public int length;
+
+    @Param({"50", "100", "150"})
+    public int homophones;
+
+    CryptanalysisParameters parameters;
+    NgramModel model;
+    // Legacy dense table, for Ngrams5.score().
+    double[] stats5;
+    int dim;
+    int[] cArray;
+    int[] cToPTrue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        parameters = new CryptanalysisParameters(language);
+        parameters.ngrams = 5;
+        parameters.readCorpus();
+        model = Cryptanalysis.model(parameters);
+        dim = model.dim();
+
+        Corpus corpus = parameters.corpus();
+        ArrayList<Integer> plaintext = new ArrayList<>();
+        int[] pCounts = corpus.counts();
+        for (int i = 0; i < corpus.length(); i++) {
+            if (corpus.symbol(i) != Corpus.SPACE) {
+                plaintext.add(corpus.symbol(i));
+            }
+        }
+        stats5 = Ngrams5.stats(corpus);
+
+        // At least one homophone per letter, then one more each time to the letter with the highest count per homophone.
+        int[] perLetter = new int[dim];
+        int allocated = 0;
+        for (int p = 0; p < dim; p++) {
+            if (pCounts[p] > 0) {
+                perLetter[p] = 1;
+                allocated++;
+            }
+        }
+        while (allocated < homophones) {
+            int best = 0;
+            for (int p = 1; p < dim; p++) {
+                if ((double) pCounts[p] / perLetter[p] > (double) pCounts[best] / Math.max(1, perLetter[best])) {
+                    best = p;
+                }
+            }
+            perLetter[best]++;
+            allocated++;
+        }
+        int[][] pToC = new int[dim][];
+        cToPTrue = new int[allocated];
+        int c = 0;
+        for (int p = 0; p < dim; p++) {
+            pToC[p] = new int[perLetter[p]];
+            for (int h = 0; h < perLetter[p]; h++) {
+                pToC[p][h] = c;
+                cToPTrue[c++] = p;
+            }
+        }
+
+        Random random = new Random(length * 31L + homophones);
+        int start = random.nextInt(plaintext.size());
+        cArray = new int[length];
+        for (int i = 0; i < length; i++) {
+            int p = plaintext.get((start + i) % plaintext.size());
+            cArray[i] = pToC[p][random.nextInt(pToC[p].length)];
+        }
+    }
+
+    int cListSize() {
+        return cToPTrue.length;
+    }
+
+    int[] randomKey(SplittableRandom random) {
+        int[] cToP = new int[cListSize()];
+        for (int c = 0; c < cToP.length; c++) {
+            cToP[c] = random.nextInt(dim);
+        }
+        return cToP;
+    }
+}
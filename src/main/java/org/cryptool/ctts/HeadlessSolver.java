@@ -0,0 +1,275 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts;
+
+import org.cryptool.ctts.cryptanalysis.Cryptanalysis;
+import org.cryptool.ctts.cryptanalysis.CryptanalysisParameters;
+import org.cryptool.ctts.cryptanalysis.SolverSession;
+import org.cryptool.ctts.grams.Language;
+import org.cryptool.ctts.util.FileUtils;
+import org.cryptool.ctts.util.Key;
+import org.cryptool.ctts.util.Token;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/*
+    Cryptanalysis without the GUI, for batch runs on headless servers, e.g.:
+    java -cp gui.jar org.cryptool.ctts.HeadlessSolver -d f42 -l latin -n 5 -h 4 -m 3 -t 3600 -o key_f42.txt
+    Reads transcription/all.txt (or the transcription files given on the command line) from the working directory,
+    and writes the best key found, in the same format as key.txt.
+    The state of the run is saved every minute to key_f42.checkpoint; if the run is killed, the same command line with
+    --resume continues it.
+ */
+public class HeadlessSolver {
+
+    public static void main(String[] args) {
+        CryptanalysisParameters params = new CryptanalysisParameters(Language.FRENCH);
+        params.cpuShare = 1.0;
+        params.timeBudgetSeconds = 600;
+        String output = "key_cryptanalysis.txt";
+        String startKey = null;
+        ArrayList<String> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-")) {
+                inputs.add(arg);
+                continue;
+            }
+            if (arg.equals("--resume")) {
+                params.resume = true;
+                continue;
+            }
+            if (arg.equals("--quantized")) {
+                params.quantizedModel = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg.toLowerCase(Locale.ROOT)) {
+                    case "-d":
+                        FileUtils.workingDirectory = value;
+                        break;
+                    case "-l":
+                        params.updateLanguage(Language.valueOf(value.toUpperCase(Locale.ROOT)));
+                        break;
+                    case "-n":
+                        params.ngrams = Integer.parseInt(value);
+                        break;
+                    case "-k":
+                        params.prunedModelMinCount = Integer.parseInt(value);
+                        break;
+                    case "-c":
+                        params.coarseToFine = true;
+                        params.coarseNgrams = Integer.parseInt(value);
+                        break;
+                    case "-i":
+                        params.interpolationWeight = Double.parseDouble(value);
+                        break;
+                    case "-h":
+                        params.maxHomophones = Integer.parseInt(value);
+                        break;
+                    case "-m":
+                        params.minCount = Integer.parseInt(value);
+                        break;
+                    case "-w":
+                        params.workers = Integer.parseInt(value);
+                        break;
+                    case "-e":
+                        params.engine = CryptanalysisParameters.Engine.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+                        break;
+                    case "-a":
+                        params.acceptance = CryptanalysisParameters.Acceptance.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+                        break;
+                    case "-p":
+                        params.islandPoolSize = Integer.parseInt(value);
+                        break;
+                    case "-r":
+                        params.islandMigrationRate = Double.parseDouble(value);
+                        break;
+                    case "-t":
+                        params.timeBudgetSeconds = Long.parseLong(value);
+                        break;
+                    case "-v":
+                        params.maxEvaluations = Long.parseLong(value);
+                        break;
+                    case "-x":
+                        params.stallCycles = Long.parseLong(value);
+                        break;
+                    case "-u":
+                        params.checkpointIntervalSeconds = Long.parseLong(value);
+                        break;
+                    case "-s":
+                        startKey = value;
+                        break;
+                    case "-o":
+                        if (FileUtils.isAbsolutePath(value)) {
+                            usage("The output key file must be relative to the working directory (-d): " + value);
+                        }
+                        output = value;
+                        break;
+                    default:
+                        usage("Unknown option " + arg);
+                }
+            } catch (IllegalArgumentException e) {
+                usage("Invalid value for " + arg + ": " + value);
+            }
+        }
+        if (params.ngrams < 4 || params.ngrams > 8 || params.maxHomophones < 1 || params.maxHomophones > 7) {
+            usage("Invalid n-grams or maximum homophones");
+        }
+        if ((params.coarseToFine || params.interpolationWeight > 0)
+                && (params.coarseNgrams < 3 || params.coarseNgrams >= params.ngrams)) {
+            usage("Invalid coarse n-grams, must be at least 3 and below n-grams");
+        }
+        if (inputs.isEmpty()) {
+            inputs.add("transcription/all.txt");
+        }
+
+        ArrayList<Token> tokens = new ArrayList<>();
+        for (String input : inputs) {
+            String text = FileUtils.readTextFile(FileUtils.fileToRead(null, input, false));
+            if (text == null) {
+                System.exit(1);
+            }
+            tokens.addAll(tokens(text));
+        }
+
+        TreeMap<String, Integer> counts = new TreeMap<>();
+        for (Token t : tokens) {
+            if (t.type == Token.Type.HOMOPHONE) {
+                counts.put(t.c, counts.getOrDefault(t.c, 0) + 1);
+            }
+        }
+        int toAssign = 0;
+        for (Token t : tokens) {
+            if (t.type == Token.Type.HOMOPHONE && counts.get(t.c) < params.minCount) {
+                t.type = Token.Type.OTHER;
+            }
+        }
+        for (int count : counts.values()) {
+            if (count >= params.minCount) {
+                toAssign++;
+            }
+        }
+
+        params.readCorpus();
+        params.referenceSequences();
+        if (startKey != null) {
+            params.ignoreCurrentKey = false;
+            params.warmStart = true;
+            params.currentKey(Key.readFromFile(startKey));
+        }
+        int assignable = Cryptanalysis.assignable(params, params.corpus().dim());
+        if (toAssign > assignable) {
+            System.out.printf("Too many ciphertext symbol types - %d - but only %d can be assigned as homophones. " +
+                    "Increase the maximum homophones per letter (-h) or the minimum ciphertext symbol count (-m).\n", toAssign, assignable);
+            System.exit(1);
+        }
+        System.out.printf("%,d symbols, %d symbol types to assign, %s, %d-grams, %s, %s, running for up to %,d seconds\n",
+                tokens.size(), toAssign, params.language, params.ngrams, params.engine, params.acceptance, params.timeBudgetSeconds);
+
+        // Checkpoints next to the output key, e.g. key_f42.checkpoint, from which --resume picks up.
+        params.checkpointFile = withoutExtension(output) + ".checkpoint";
+        SolverSession session = Cryptanalysis.solve(tokens, params, 1000);
+        StringBuilder keySb = new StringBuilder();
+        try {
+            while (session.isRunning()) {
+                Thread.sleep(1_000);
+                for (String event = session.pollEvent(); event != null; event = session.pollEvent()) {
+                    System.out.println(event);
+                }
+                StringBuilder bestSb = session.pollBestKey();
+                if (bestSb != null) {
+                    System.out.println(bestSb.substring(0, bestSb.indexOf("\n")));
+                }
+            }
+            keySb = session.awaitBestKey();
+            for (String event = session.pollEvent(); event != null; event = session.pollEvent()) {
+                System.out.println(event);
+            }
+            System.out.println(session.telemetry().summary());
+            session.telemetry().export(withoutExtension(output) + "_telemetry");
+        } catch (InterruptedException e) {
+            session.cancel();
+            Thread.currentThread().interrupt();
+        }
+
+        if (keySb.length() == 0) {
+            System.out.println("No key found");
+            System.exit(1);
+        }
+        keySb.insert(0, "#ORIGIN: Cryptanalysis by OTA\n");
+        new Key().parse(output, keySb);
+        // Not with FileUtils.writeTextFile(), which would cut the file name at its first dot.
+        File file = FileUtils.fileToWrite(null, output, false);
+        try (FileWriter fileWriter = new FileWriter(file)) {
+            fileWriter.write(keySb.toString());
+            System.out.printf("Saved %s\n", file);
+        } catch (IOException e) {
+            System.out.printf("Failed save %s\n", file);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    // Transcription format (see TranscribedImage): "# filename" headers, then one line per line of the document, with
+    // the transcription values of its symbols, each followed by ';'.
+    static ArrayList<Token> tokens(String text) {
+        ArrayList<Token> tokens = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            for (String c : line.split(";")) {
+                if (c.isEmpty() || c.equals("null") || Key.lockedC(c)) {
+                    tokens.add(new Token(Token.Type.OTHER, c));
+                } else {
+                    tokens.add(new Token(Token.Type.HOMOPHONE, c));
+                }
+            }
+            tokens.add(new Token(Token.Type.NEW_LINE));
+        }
+        return tokens;
+    }
+
+    // Removes the extension of the file name only, e.g. ./keys/key.v2.txt -> ./keys/key.v2
+    private static String withoutExtension(String path) {
+        int name = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+        int dot = path.lastIndexOf('.');
+        return dot > name ? path.substring(0, dot) : path;
+    }
+
+    private static void usage(String error) {
+        System.out.println(error);
+        System.out.println("Usage: HeadlessSolver [transcription files] [-d working directory] [-l language] [-n n-grams (4-8)] " +
+                "[-k min count of 7/8-grams] [-c coarse n-grams (3-5)] [-i interpolation weight of the coarse n-grams (0-1)] " +
+                "[-h max homophones per letter] [-m min symbol count] [-w workers] [-e restarts|parallel-tempering|islands|tabu|gibbs] " +
+                "[-p island elite pool size] [-r island migration rate (0-1)] [-a metropolis|threshold|late-acceptance] " +
+                "[-s key file to start from] [-t max seconds] [-v max evaluations] [-x max cycles without improvement] " +
+                "[-u checkpoint interval in seconds] [-o output key file] [--resume] [--quantized]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Decides whether a chain moves to a candidate key. One instance per chain (late acceptance has state), called only
+// by the thread running the chain, with the chain's own random generator.
+public interface AcceptanceStrategy {
+
+    boolean accept(double newScore, double currentScore, double temperature, SplittableRandom random);
+
+    // The chain starts from a new key.
+    default void reset(double score) {
+    }
+
+    static AcceptanceStrategy of(CryptanalysisParameters parameters) {
+        switch (parameters.acceptance) {
+            case THRESHOLD:
+                return new Threshold();
+            case LATE_ACCEPTANCE:
+                return new LateAcceptance(parameters.lateAcceptanceLength);
+            default:
+                return new Metropolis();
+        }
+    }
+
+    // Classic SA: always accepts a better key, and a worse one with probability exp(diff / temperature).
+    final class Metropolis implements AcceptanceStrategy {
+        @Override
+        public boolean accept(double newScore, double currentScore, double temperature, SplittableRandom random) {
+            return SimulatedAnnealing.accept(newScore, currentScore, temperature, random);
+        }
+    }
+
+    // Threshold accepting (Dueck & Scheuer): accepts any key not worse by more than the temperature, no random draw.
+    final class Threshold implements AcceptanceStrategy {
+        @Override
+        public boolean accept(double newScore, double currentScore, double temperature, SplittableRandom random) {
+            return newScore - currentScore > -temperature;
+        }
+    }
+
+    // Late acceptance hill climbing (Burke & Bykov): accepts a key not worse than the current one, or than the
+    // current one as it was length moves ago. Ignores the temperature.
+    final class LateAcceptance implements AcceptanceStrategy {
+        private final double[] history;
+        private int v;
+
+        LateAcceptance(int length) {
+            history = new double[Math.max(1, length)];
+        }
+
+        @Override
+        public void reset(double score) {
+            Arrays.fill(history, score);
+            v = 0;
+        }
+
+        @Override
+        public boolean accept(double newScore, double currentScore, double temperature, SplittableRandom random) {
+            boolean accepted = newScore >= currentScore || newScore >= history[v];
+            history[v] = accepted ? newScore : currentScore;
+            if (++v == history.length) {
+                v = 0;
+            }
+            return accepted;
+        }
+    }
+}
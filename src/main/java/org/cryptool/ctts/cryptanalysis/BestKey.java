@@ -0,0 +1,42 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import java.util.Arrays;
+
+// Immutable snapshot of a key found by a worker. It is only rendered as text when displayed or saved.
+final class BestKey {
+    final int[] cToP;
+    final double score;
+    final int task;
+    final int cycle;
+    final int round;
+    final int rounds;
+    final double temp;
+    final long update;
+
+    BestKey(int[] cToP, double score, int task, int cycle, int round, int rounds, double temp, long update) {
+        this.cToP = Arrays.copyOf(cToP, cToP.length);
+        this.score = score;
+        this.task = task;
+        this.cycle = cycle;
+        this.round = round;
+        this.rounds = rounds;
+        this.temp = temp;
+        this.update = update;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import org.cryptool.ctts.grams.IncrementalScorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// One search state - key, homophone counts per letter, and its (incrementally maintained) score - with the SA moves:
+// a round tries to assign each homophone to each letter, then to swap each pair of homophones.
+final class Chain {
+
+    final int[] cToP;
+    final int[] homophoneCounts;
+    // Scores cToP - may be switched (then call rescore() or randomize()) between rounds, see coarse-to-fine.
+    IncrementalScorer scorer;
+    // Reseeded at the start of each cycle, see SolverSession.seed().
+    SplittableRandom random = new SplittableRandom();
+    double score;
+    // False while the scores are not comparable with the published ones (coarse model).
+    boolean publishing = true;
+
+    private final ArrayList<String> pList;
+    private final int[] maxHomophonesAll;
+    private final int[] cToPforced;
+    private final AcceptanceStrategy acceptance;
+
+    Chain(IncrementalScorer scorer, AcceptanceStrategy acceptance, int cListSize, ArrayList<String> pList,
+          int[] maxHomophonesAll, int[] cToPforced) {
+        this.scorer = scorer;
+        this.acceptance = acceptance;
+        this.pList = pList;
+        this.maxHomophonesAll = maxHomophonesAll;
+        this.cToPforced = Arrays.copyOf(cToPforced, cToPforced.length);
+        this.cToP = new int[cListSize];
+        this.homophoneCounts = new int[pList.size()];
+    }
+
+    void reseed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    void randomize() {
+        seed(null);
+    }
+
+    // Starts from the values of cToPstart (those which are not -1 and fit the homophone limits), the other homophones
+    // being assigned randomly.
+    void seed(int[] cToPstart) {
+        Arrays.fill(homophoneCounts, 0);
+        randomAssignment(random, pList.size(), cToP, homophoneCounts, maxHomophonesAll, cToPforced, cToPstart);
+        score = scorer.reset(cToP);
+        acceptance.reset(score);
+    }
+
+    // Keeps the key, and scores it with another scorer.
+    void rescore(IncrementalScorer scorer) {
+        this.scorer = scorer;
+        score = scorer.reset(cToP);
+        acceptance.reset(score);
+    }
+
+    // Starts from a copy of another key, with a fraction of the homophones randomly reassigned.
+    void perturb(int[] from, double fraction) {
+        System.arraycopy(from, 0, cToP, 0, cToP.length);
+        Arrays.fill(homophoneCounts, 0);
+        for (int p : cToP) {
+            if (p != -1) {
+                homophoneCounts[p]++;
+            }
+        }
+        final int pListSize = pList.size();
+        int moves = (int) Math.ceil(fraction * cToP.length);
+        for (int m = 0; m < moves; m++) {
+            int c = random.nextInt(cToP.length);
+            int p = random.nextInt(pListSize);
+            if (cToPforced[c] != -1 || cToP[c] == p || homophoneCounts[p] >= maxHomophonesAll[p]) {
+                continue;
+            }
+            if (pList.get(p).length() > 1 && homophoneCounts[p] >= 1) {
+                continue;
+            }
+            if (cToP[c] != -1) {
+                homophoneCounts[cToP[c]]--;
+            }
+            homophoneCounts[p]++;
+            cToP[c] = p;
+        }
+        score = scorer.reset(cToP);
+        acceptance.reset(score);
+    }
+
+    // Returns false if the session was cancelled during the round.
+    boolean round(SolverSession session, double temp, int task, int cycle, int round, int rounds) {
+        final int cListSize = cToP.length;
+        final int pListSize = pList.size();
+        long evaluations = 0;
+        long accepted = 0;
+        long improvements = 0;
+
+        int shift1 = random.nextInt(cListSize);
+        for (int c_ = 0; c_ < cListSize; c_++) {
+            int c = (c_ + shift1) % cListSize;
+
+            int shift2 = random.nextInt(pListSize);
+            for (int p_ = 0; p_ < pListSize; p_++) {
+                if (session.isCancelled()) {
+                    session.evaluated(task, evaluations, accepted, improvements);
+                    return false;
+                }
+                int p = (p_ + shift2) % pListSize;
+                if (!canAssign(c, p)) {
+                    continue;
+                }
+
+                int previousP = cToP[c];
+                double newScore = assign(c, p);
+                evaluations++;
+                if (acceptance.accept(newScore, score, temp, random)) {
+                    score = newScore;
+                    accepted++;
+
+                    if (publishing && session.improves(score)) {
+                        improvements++;
+                        session.publish(cToP, score, task, cycle, round, rounds, temp);
+                    }
+                } else {
+                    assign(c, previousP);
+                }
+            }
+        }
+
+        for (int c1_ = 0; c1_ < cListSize; c1_++) {
+            int c1 = (c1_ + shift1) % cListSize;
+
+            for (int c2_ = c1_ + 1; c2_ < cListSize; c2_++) {
+                if (session.isCancelled()) {
+                    session.evaluated(task, evaluations, accepted, improvements);
+                    return false;
+                }
+
+                int c2 = (c2_ + shift1) % cListSize;
+
+                if (!canSwap(c1, c2)) {
+                    continue;
+                }
+                double newScore = scorer.swap(c1, c2);
+                evaluations++;
+                if (acceptance.accept(newScore, score, temp, random)) {
+                    score = newScore;
+                    accepted++;
+
+                    if (publishing && session.improves(score)) {
+                        improvements++;
+                        session.publish(cToP, score, task, cycle, round, rounds, temp);
+                    }
+                } else {
+                    scorer.swap(c1, c2);
+                }
+            }
+        }
+        session.evaluated(task, evaluations, accepted, improvements);
+        return true;
+    }
+
+    // The move constraints, shared by all the engines: homophone limits per letter, a single homophone for multi-letter
+    // symbols, and locked homophones.
+    boolean canAssign(int c, int p) {
+        if (homophoneCounts[p] >= maxHomophonesAll[p]) {
+            return false;
+        }
+        if (pList.get(p).length() > 1 && homophoneCounts[p] >= 1) {
+            return false;
+        }
+        return cToPforced[c] == -1 || cToPforced[c] == p;
+    }
+
+    boolean canSwap(int c1, int c2) {
+        if (cToP[c1] == cToP[c2]) {
+            return false;
+        }
+        if (cToPforced[c1] != -1 && cToP[c1] == cToPforced[c1]) {
+            return false;
+        }
+        return cToPforced[c2] == -1 || cToP[c2] != cToPforced[c2];
+    }
+
+    double assign(int c, int p) {
+        int previousP = scorer.p(c);
+        homophoneCounts[previousP]--;
+        homophoneCounts[p]++;
+        return scorer.assign(c, p);
+    }
+
+    private void randomAssignment(SplittableRandom random, int pListSize, int[] cToP, int[] homophoneCounts, int[] maxHomophones, int[] cToPforced, int[] cToPstart) {
+
+        int maxAssignableHomophones = 0;
+        for (int p = 0; p < pListSize; p++) {
+            maxAssignableHomophones += maxHomophones[p];
+        }
+
+        Arrays.fill(cToP, -1);
+        int cListSize = cToP.length;
+        int assignedHomophones = 0;
+
+        if (cToPforced != null) {
+            for (int c = 0; c < cListSize; c++) {
+                int forcedP = cToPforced[c];
+                if (forcedP != -1) {
+                    cToP[c] = forcedP;
+                    homophoneCounts[forcedP]++;
+                    assignedHomophones++;
+                }
+            }
+        }
+
+        if (cToPstart != null) {
+            for (int c = 0; c < cListSize; c++) {
+                int p = cToPstart[c];
+                if (cToP[c] != -1 || p == -1 || homophoneCounts[p] >= maxHomophones[p]) {
+                    continue;
+                }
+                if (pList.get(p).length() > 1 && homophoneCounts[p] >= 1) {
+                    continue;
+                }
+                cToP[c] = p;
+                homophoneCounts[p]++;
+                assignedHomophones++;
+            }
+        }
+
+        while (assignedHomophones < Math.min(maxAssignableHomophones, cListSize)) {
+            int c = random.nextInt(cListSize);
+            if (cToP[c] != -1) {
+                continue;
+            }
+            if (cToPforced != null) {
+                int forcedP = cToPforced[c];
+                if (forcedP != -1) {
+                    continue;
+                }
+            }
+            int p = random.nextInt(pListSize);
+            while (homophoneCounts[p] >= maxHomophones[p]) {
+                p = (p == pListSize - 1) ? 0 : p + 1;
+            }
+            homophoneCounts[p]++;
+            assignedHomophones++;
+            cToP[c] = p;
+        }
+
+    }
+}
@@ -0,0 +1,213 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// The state of a session, so that a run killed or stopped can resume: the seed from which the workers derive their
+// random generators (per cycle, and per round), the next cycle of each worker and where it was in its current cycle
+// (round and keys), the counters, the best key and the elite pool (island model). Keys are stored with one byte per
+// homophone. The round interrupted by the end of the run is run again, with the same random generator.
+final class Checkpoint {
+
+    // A worker at the start of round of cycle, with its key (or the keys of all the chains, for parallel tempering).
+    // Engines which need more to resume a cycle (tabu search) also keep the best score of the cycle so far, and state.
+    static final class Snapshot {
+        final int cycle;
+        final int round;
+        final int[][] keys;
+        final double cycleBest;
+        final int[] state;
+
+        Snapshot(int cycle, int round, int[][] keys) {
+            this(cycle, round, keys, 0, null);
+        }
+
+        Snapshot(int cycle, int round, int[][] keys, double cycleBest, int[] state) {
+            this.cycle = cycle;
+            this.round = round;
+            this.keys = keys;
+            this.cycleBest = cycleBest;
+            this.state = state;
+        }
+    }
+
+    private static final int MAGIC = 0x43545453; // "CTTS"
+    private static final int VERSION = 2;
+
+    // Of the ciphertext, letters and engine, so that a checkpoint is not resumed with another document or parameters.
+    int fingerprint;
+    long seed;
+    double elapsedSeconds;
+    long updates;
+    long cycles;
+    long cyclesAtImprovement;
+    double bestOverall;
+    BestKey best;
+    int[] nextCycles;
+    Snapshot[] snapshots;
+    long[] evaluations;
+    long[] accepted;
+    long[] improvements;
+    int[][] elites;
+    double[] eliteScores;
+
+    void write(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(fingerprint);
+            out.writeLong(seed);
+            out.writeDouble(elapsedSeconds);
+            out.writeLong(updates);
+            out.writeLong(cycles);
+            out.writeLong(cyclesAtImprovement);
+            out.writeDouble(bestOverall);
+            out.writeBoolean(best != null);
+            if (best != null) {
+                writeKey(out, best.cToP);
+                out.writeDouble(best.score);
+                out.writeInt(best.task);
+                out.writeInt(best.cycle);
+                out.writeInt(best.round);
+                out.writeInt(best.rounds);
+                out.writeDouble(best.temp);
+                out.writeLong(best.update);
+            }
+            out.writeInt(nextCycles.length);
+            for (int w = 0; w < nextCycles.length; w++) {
+                out.writeInt(nextCycles[w]);
+                out.writeLong(evaluations[w]);
+                out.writeLong(accepted[w]);
+                out.writeLong(improvements[w]);
+                Snapshot snapshot = snapshots[w];
+                out.writeBoolean(snapshot != null);
+                if (snapshot != null) {
+                    out.writeInt(snapshot.cycle);
+                    out.writeInt(snapshot.round);
+                    out.writeInt(snapshot.keys.length);
+                    for (int[] key : snapshot.keys) {
+                        writeKey(out, key);
+                    }
+                    out.writeDouble(snapshot.cycleBest);
+                    out.writeInt(snapshot.state == null ? -1 : snapshot.state.length);
+                    if (snapshot.state != null) {
+                        for (int value : snapshot.state) {
+                            out.writeInt(value);
+                        }
+                    }
+                }
+            }
+            out.writeInt(elites.length);
+            for (int e = 0; e < elites.length; e++) {
+                writeKey(out, elites[e]);
+                out.writeDouble(eliteScores[e]);
+            }
+        } catch (IOException e) {
+            System.out.printf("Failed to save checkpoint %s: %s\n", file, e);
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.printf("Failed to save checkpoint %s: %s\n", file, e);
+        }
+    }
+
+    static Checkpoint read(File file) {
+        Checkpoint c = new Checkpoint();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new RuntimeException("Not a cryptanalysis checkpoint, or saved by another version: " + file);
+            }
+            c.fingerprint = in.readInt();
+            c.seed = in.readLong();
+            c.elapsedSeconds = in.readDouble();
+            c.updates = in.readLong();
+            c.cycles = in.readLong();
+            c.cyclesAtImprovement = in.readLong();
+            c.bestOverall = in.readDouble();
+            if (in.readBoolean()) {
+                int[] cToP = readKey(in);
+                c.best = new BestKey(cToP, in.readDouble(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readDouble(), in.readLong());
+            }
+            int workers = in.readInt();
+            c.nextCycles = new int[workers];
+            c.evaluations = new long[workers];
+            c.accepted = new long[workers];
+            c.improvements = new long[workers];
+            c.snapshots = new Snapshot[workers];
+            for (int w = 0; w < workers; w++) {
+                c.nextCycles[w] = in.readInt();
+                c.evaluations[w] = in.readLong();
+                c.accepted[w] = in.readLong();
+                c.improvements[w] = in.readLong();
+                if (in.readBoolean()) {
+                    int cycle = in.readInt();
+                    int round = in.readInt();
+                    int[][] keys = new int[in.readInt()][];
+                    for (int k = 0; k < keys.length; k++) {
+                        keys[k] = readKey(in);
+                    }
+                    double cycleBest = in.readDouble();
+                    int length = in.readInt();
+                    int[] state = length < 0 ? null : new int[length];
+                    for (int i = 0; i < length; i++) {
+                        state[i] = in.readInt();
+                    }
+                    c.snapshots[w] = new Snapshot(cycle, round, keys, cycleBest, state);
+                }
+            }
+            int elites = in.readInt();
+            c.elites = new int[elites][];
+            c.eliteScores = new double[elites];
+            for (int e = 0; e < elites; e++) {
+                c.elites[e] = readKey(in);
+                c.eliteScores[e] = in.readDouble();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read checkpoint " + file + ": " + e);
+        }
+        return c;
+    }
+
+    private static void writeKey(DataOutputStream out, int[] cToP) throws IOException {
+        out.writeInt(cToP.length);
+        for (int p : cToP) {
+            out.writeByte(p);
+        }
+    }
+
+    private static int[] readKey(DataInputStream in) throws IOException {
+        int[] cToP = new int[in.readInt()];
+        for (int c = 0; c < cToP.length; c++) {
+            cToP[c] = in.readByte();
+        }
+        return cToP;
+    }
+}
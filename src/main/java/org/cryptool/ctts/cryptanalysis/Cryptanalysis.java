@@ -16,24 +16,26 @@
 
 package org.cryptool.ctts.cryptanalysis;
 
+import org.cryptool.ctts.grams.BackoffNgramModel;
+import org.cryptool.ctts.grams.Corpus;
+import org.cryptool.ctts.grams.IncrementalScorer;
+import org.cryptool.ctts.grams.InterpolatedNgramModel;
+import org.cryptool.ctts.grams.Language;
+import org.cryptool.ctts.grams.NgramModel;
+import org.cryptool.ctts.grams.NgramModelCache;
+import org.cryptool.ctts.grams.Ngrams3;
 import org.cryptool.ctts.grams.Ngrams4;
 import org.cryptool.ctts.grams.Ngrams5;
 import org.cryptool.ctts.grams.Ngrams6;
+import org.cryptool.ctts.grams.SparseNgramModel;
+import org.cryptool.ctts.util.FileUtils;
 import org.cryptool.ctts.util.Token;
 
+import java.io.File;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class Cryptanalysis {
 
-    static final StringBuilder keySb = new StringBuilder();
-    static final AtomicBoolean started = new AtomicBoolean(false);
-    static final AtomicBoolean readUpdate = new AtomicBoolean(true);
-    static final AtomicLong updates = new AtomicLong(0);
-    static final ConcurrentLinkedQueue sequence = new ConcurrentLinkedQueue();
-    static double bestOverall = -Double.MAX_VALUE;
     final private static int[][] MAX_HOMOPHONE_GROUP_SIZE = {
             {-1}, // 0
             {-1, 26}, // 1
@@ -46,19 +48,10 @@ public class Cryptanalysis {
 
     };
 
-    public static void solve(ArrayList<Token> ciphertextTokens, CryptanalysisParameters parameters, int maxTasks) {
-        Set<String> pSet = new TreeSet<>();
-        for (Token r : parameters.referenceTokens) {
-            if (r.type == Token.Type.HOMOPHONE) {
-                pSet.add(r.p);
-            }
-        }
-        ArrayList<String> pList = new ArrayList<>(new TreeSet<>(pSet));
-        for (Token r : parameters.referenceTokens) {
-            r.cIndex = pList.indexOf(r.p);
-        }
+    public static SolverSession solve(ArrayList<Token> ciphertextTokens, CryptanalysisParameters parameters, int maxTasks) {
+        NgramModel stats = model(parameters);
+        ArrayList<String> pList = new ArrayList<>(stats.alphabet());
         int pListSize = pList.size();
-        double[] stats = stats(parameters, pListSize);
 
         Set<String> cSet = new TreeSet<>();
         for (Token t : ciphertextTokens) {
@@ -84,12 +77,7 @@ public class Cryptanalysis {
 
         int[] maxHomophonesAll = new int[pListSize];
 
-        int[] pCounts = new int[pListSize];
-        for (Token t : parameters.referenceTokens) {
-            if (t.cIndex != -1) {
-                pCounts[t.cIndex]++;
-            }
-        }
+        int[] pCounts = stats.counts();
         ArrayList<Integer> sorted = new ArrayList<>();
         for (int p = 0; p < pListSize; p++) {
             sorted.add(p);
@@ -117,9 +105,6 @@ public class Cryptanalysis {
             }
         }
 
-        final int[] _ciphertextTokenIndices = ciphertextTokenIndices;
-        int cores = Runtime.getRuntime().availableProcessors();
-
         int[] cToPforced = new int[cList.size()];
         Arrays.fill(cToPforced, -1);
 
@@ -132,31 +117,122 @@ public class Cryptanalysis {
             }
         }
 
-        if (started.get()) {
-            stop();
+        final int[] cToPwarm = warmKey(parameters, cList, pList, cToPforced);
+
+        final int tasks = parameters.workers(maxTasks);
+        final int workers = parameters.engine == CryptanalysisParameters.Engine.PARALLEL_TEMPERING ? Math.max(2, parameters.replicas) : tasks;
+        SolverSession session = new SolverSession(tasks, parameters.workStealing, workers);
+        session.limits(parameters.timeBudgetSeconds, parameters.maxEvaluations, parameters.stallCycles);
+        if (parameters.checkpointFile != null) {
+            File file = FileUtils.fileToWrite(null, parameters.checkpointFile, false);
+            if (file != null) {
+                // Includes whatever changes the scale of the scores or the limits of the key, as the best score is resumed.
+                int fingerprint = Objects.hash(Arrays.hashCode(ciphertextTokenIndices), cList, pList, parameters.engine.name(),
+                        parameters.modelKey(), parameters.backoffWeight, parameters.interpolationWeight, parameters.coarseToFine,
+                        parameters.coarseToFine || parameters.interpolationWeight > 0 ? parameters.modelKey(parameters.coarseNgrams) : "",
+                        Arrays.hashCode(maxHomophonesAll), Arrays.hashCode(cToPforced), workers);
+                // The checkpoint is validated before checkpoints are on, so that a failed resume does not overwrite it.
+                if (parameters.resume && file.exists()) {
+                    try {
+                        session.resume(Checkpoint.read(file), fingerprint);
+                    } catch (RuntimeException e) {
+                        session.cancel();
+                        throw e;
+                    }
+                }
+                session.checkpoints(file, parameters.checkpointIntervalSeconds, fingerprint);
+            }
         }
+        IncrementalScorer prototype = new IncrementalScorer(stats, ciphertextTokenIndices, cList.size());
+        IncrementalScorer coarsePrototype = parameters.coarseToFine && parameters.coarseNgrams < parameters.ngrams
+                ? new IncrementalScorer(model(parameters, parameters.coarseNgrams), ciphertextTokenIndices, cList.size())
+                : null;
+        session.renderer(key -> {
+            long start = System.nanoTime();
+            int[] forced = Arrays.copyOf(cToPforced, cToPforced.length);
+            updateForced(parameters, ciphertextTokens, pList, key.cToP, forced);
+            long forcedEnd = System.nanoTime();
+            StringBuilder keySb = keySb(key, pList, cList, forced);
+            session.telemetry().rendered(forcedEnd - start, System.nanoTime() - forcedEnd);
+            return keySb;
+        });
+        switch (parameters.engine) {
+            case PARALLEL_TEMPERING: {
+                Chain[] chains = new Chain[workers];
+                for (int k = 0; k < chains.length; k++) {
+                    chains[k] = new Chain(new IncrementalScorer(prototype), AcceptanceStrategy.of(parameters), cList.size(), pList, maxHomophonesAll, cToPforced);
+                }
+                ParallelTempering.start(session, chains, cToPwarm, parameters.temperingMinTemp, parameters.temperingMaxTemp);
+                break;
+            }
+            case TABU: {
+                for (int t = 0; t < tasks; t++) {
+                    Chain chain = new Chain(new IncrementalScorer(prototype), AcceptanceStrategy.of(parameters), cList.size(), pList, maxHomophonesAll, cToPforced);
+                    TabuSearch.start(session, chain, t, cToPwarm, parameters);
+                }
+                break;
+            }
+            case GIBBS: {
+                for (int t = 0; t < tasks; t++) {
+                    Chain chain = new Chain(new IncrementalScorer(prototype), AcceptanceStrategy.of(parameters), cList.size(), pList, maxHomophonesAll, cToPforced);
+                    GibbsSampler.start(session, chain, t, cToPwarm, parameters);
+                }
+                break;
+            }
+            default: {
+                ElitePool elites = parameters.engine == CryptanalysisParameters.Engine.ISLANDS
+                        ? new ElitePool(parameters.islandPoolSize) : null;
+                if (elites != null) {
+                    session.elites(elites);
+                }
+                for (int t = 0; t < tasks; t++) {
+                    final int _t = t;
+                    IncrementalScorer fine = new IncrementalScorer(prototype);
+                    IncrementalScorer coarse = coarsePrototype == null ? null : new IncrementalScorer(coarsePrototype);
+                    Chain chain = new Chain(fine, AcceptanceStrategy.of(parameters), cList.size(), pList, maxHomophonesAll, cToPforced);
+                    session.schedule(_t, cycle -> SA(session, _t, cycle, chain, fine, coarse, cToPwarm, elites, parameters, 100000, 0, 250));
+                }
+            }
+        }
+        return session;
+    }
 
-        bestOverall = -Double.MAX_VALUE;
-        Cryptanalysis.keySb.setLength(0);
-        Cryptanalysis.sequence.clear();
-        Cryptanalysis.started.set(true);
-        Cryptanalysis.updates.set(0);
-
-        for (int t = 0; t < Math.min(maxTasks, Math.max(1, cores / 4)); t++) {
-            final int _t = t;
-            new Thread(() -> SA(_t, parameters, _ciphertextTokenIndices, stats, cToPforced, maxHomophonesAll, 100000, 0,
-                    250, ciphertextTokens, cList, pList)).start();
+    // The n-gram model for the language, n and normalization flags in parameters, from the cache if already built,
+    // interpolated with the coarse model if parameters.interpolationWeight > 0.
+    public static NgramModel model(CryptanalysisParameters parameters) {
+        NgramModel model = model(parameters, parameters.ngrams);
+        if (parameters.interpolationWeight > 0 && parameters.coarseNgrams < parameters.ngrams) {
+            model = new InterpolatedNgramModel(model, model(parameters, parameters.coarseNgrams), parameters.interpolationWeight);
         }
+        return model;
+    }
 
+    // The model of the given order. 7- and 8-gram models back off to the 5-gram model.
+    static NgramModel model(CryptanalysisParameters parameters, int ngrams) {
+        // The reference text is only read and normalized (in stats()) if the model is not in the cache.
+        long source = 31L * Language.crc(parameters.language) + parameters.corpusKey().hashCode();
+        NgramModel model = NgramModelCache.get(parameters.modelKey(ngrams), source, () -> stats(parameters, ngrams));
+        if (ngrams >= CryptanalysisParameters.PRUNED_MODEL_MIN_NGRAMS && parameters.backoffWeight > 0) {
+            model = new BackoffNgramModel(model, model(parameters, CryptanalysisParameters.BACKOFF_NGRAMS), parameters.backoffWeight);
+        }
+        return model;
     }
 
-    public static void stop() {
-        started.set(false);
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    // Forced values, and starting values from the current key (see CryptanalysisParameters.warmStart), or null if
+    // there is no warm start.
+    private static int[] warmKey(CryptanalysisParameters parameters, ArrayList<String> cList, ArrayList<String> pList, int[] cToPforced) {
+        if (parameters.ignoreCurrentKey || !parameters.warmStart || parameters.startingKey.isEmpty()) {
+            return null;
+        }
+        int[] cToPwarm = Arrays.copyOf(cToPforced, cToPforced.length);
+        for (String c : parameters.startingKey.keySet()) {
+            String p = parameters.startingKey.get(c);
+            int cIndex = cList.indexOf(c);
+            if (cIndex != -1 && cToPwarm[cIndex] == -1 && pList.contains(p)) {
+                cToPwarm[cIndex] = pList.indexOf(p);
+            }
         }
+        return cToPwarm;
     }
 
     public static int assignable(CryptanalysisParameters parameters, int pListSize) {
@@ -171,236 +247,113 @@ public class Cryptanalysis {
         return assignable;
     }
 
-    private static void SA(int task, CryptanalysisParameters parameters, int[] ciphertextTokenIndices, double[] stats,
-                           int[] cToPforcedExternal, int[] maxHomophonesAll, double maxTemp, double minTemp, int rounds,
-                           ArrayList<Token> ciphertextTokens, ArrayList<String> cList, ArrayList<String> pList) {
-
-        int[] cToPforced = Arrays.copyOf(cToPforcedExternal, cToPforcedExternal.length);
-
-        Random random = new Random();
-
-        int cListSize = cList.size();
-
-        // Buffer, so that it is not allocated each time we compute the score.
-        int pListSize = pList.size();
-        double[] pCounts = new double[pListSize];
-
-        Random r = new Random();
-        for (int cycle = 0; ; cycle++) {
-            int[] cToP = new int[cListSize];
-            int[] homophoneCounts = new int[pListSize];
-
-            randomAssignment(pListSize, cToP, homophoneCounts, maxHomophonesAll, cToPforced);
-            double current = score(parameters, cToP, ciphertextTokenIndices, stats, pListSize, pCounts);
-            if (current > bestOverall) {
-                bestOverall = current;
-            }
-            for (int round = 0; round < rounds; round++) {
-
-                int shift1 = r.nextInt(cListSize);
-                double temp = minTemp + r.nextFloat() * (maxTemp - minTemp) * (rounds - round + 1) / rounds;
-                for (int c_ = 0; c_ < cListSize; c_++) {
-                    int c = (c_ + shift1) % cListSize;
-
-                    int shift2 = r.nextInt(pListSize);
-                    for (int p_ = 0; p_ < pListSize; p_++) {
-                        if (!started.get()) {
-                            // System.out.println("exit SA");
-                            return;
-                        }
-                        int p = (p_ + shift2) % pListSize;
-                        if (homophoneCounts[p] >= maxHomophonesAll[p]) {
-                            continue;
-                        }
-                        if (pList.get(p).length() > 1 && homophoneCounts[p] >= 1) {
-                            continue;
-                        }
-
-                        if (cToPforced[c] != -1 && cToPforced[c] != p) {
-                            continue;
-                        }
-
-                        int previousP = assign(cToP, homophoneCounts, c, p);
-                        double score = score(parameters, cToP, ciphertextTokenIndices, stats, pListSize, pCounts);
-                        if (SimulatedAnnealing.accept(score, current, temp, random)) {
-                            current = score;
-
-                            if (current > bestOverall) {
-                                bestOverall = current;
-                                int[] keepForced = Arrays.copyOf(cToPforced, cToPforced.length);
-                                updateForced(parameters, ciphertextTokens, pList, cToP, cToPforced);
-                                StringBuilder keySb = keySb(task, score, cycle, round, rounds, temp, pList, cList, cToP, cToPforced);
-                                System.arraycopy(keepForced, 0, cToPforced, 0, cToPforced.length);
-
-                                synchronized (Cryptanalysis.keySb) {
-                                    Cryptanalysis.keySb.setLength(0);
-                                    Cryptanalysis.keySb.append(keySb);
-                                    sequence.offer(keySb.toString());
-                                    updates.incrementAndGet();
-                                    readUpdate.set(false);
-                                }
-
-                            }
-                        } else {
-                            assign(cToP, homophoneCounts, c, previousP);
-                        }
-                    }
-                }
-
-                for (int c1_ = 0; c1_ < cListSize; c1_++) {
-                    int c1 = (c1_ + shift1) % cListSize;
-
-                    for (int c2_ = c1_ + 1; c2_ < cListSize; c2_++) {
-                        if (!started.get()) {
-                            // System.out.println("exit SA");
-                            return;
-                        }
-
-                        int c2 = (c2_ + shift1) % cListSize;
-
-                        if (cToP[c1] == cToP[c2]) {
-                            continue;
-                        }
-                        if (cToPforced[c1] != -1 && cToP[c1] == cToPforced[c1]) {
-                            continue;
-                        }
-                        if (cToPforced[c2] != -1 && cToP[c2] == cToPforced[c2]) {
-                            continue;
-                        }
-                        swap(cToP, c1, c2);
-                        double score = score(parameters, cToP, ciphertextTokenIndices, stats, pListSize, pCounts);
-                        if (SimulatedAnnealing.accept(score, current, temp, random)) {
-                            current = score;
-
-                            if (current > bestOverall) {
-                                bestOverall = current;
-
-                                int[] keepForced = Arrays.copyOf(cToPforced, cToPforced.length);
-                                updateForced(parameters, ciphertextTokens, pList, cToP, cToPforced);
-                                StringBuilder keySb = keySb(task, score, cycle, round, rounds, temp, pList, cList, cToP, cToPforced);
-                                System.arraycopy(keepForced, 0, cToPforced, 0, cToPforced.length);
-
-                                synchronized (Cryptanalysis.keySb) {
-                                    Cryptanalysis.keySb.setLength(0);
-                                    Cryptanalysis.keySb.append(keySb);
-                                    sequence.offer(keySb.toString());
-                                    updates.incrementAndGet();
-                                    readUpdate.set(false);
-                                }
-                            }
-                        } else {
-                            swap(cToP, c1, c2);
-                        }
-                    }
-                }
-            }
+    // One SA cycle (restart), from a random assignment. In the island model (elites != null), the chain regularly
+    // offers its key to the shared elite pool, and may instead restart from a perturbed elite key, in which case it
+    // skips the first (hottest) half of the rounds, which would only destroy it.
+    // With a coarse scorer, a cycle from a random key first runs the whole temperature schedule, compressed into
+    // parameters.coarseRounds of the rounds, with the coarse model. It then switches to the fine model and, like from
+    // an elite key, continues with the second half of the schedule. Coarse scores are not comparable with the fine
+    // ones, so the keys are only published (and offered to the elite pool) after the switch.
+    // With a warm start key, the first cycle of each worker instead starts from that key, with a short schedule at
+    // low temperatures, so that an almost correct key (e.g. after a few transcription fixes) is refined, not destroyed.
+    private static void SA(SolverSession session, int task, int cycle, Chain chain, IncrementalScorer fine,
+                           IncrementalScorer coarse, int[] cToPwarm, ElitePool elites, CryptanalysisParameters parameters,
+                           double maxTemp, double minTemp, int rounds) {
+
+        Checkpoint.Snapshot resumed = session.resumePoint(task, cycle);
+        chain.reseed(session.seed(task, cycle));
+        SplittableRandom r = chain.random;
+        boolean warm = cToPwarm != null && cycle == 0;
+        if (warm) {
+            maxTemp = parameters.warmStartMaxTemp;
+            rounds = parameters.warmStartRounds;
         }
-    }
-
-    private static void updateForced(CryptanalysisParameters params, ArrayList<Token> ciphertextTokens, ArrayList<String> pList, int[] cToP, int[] cToPforced) {
-
-        String pS = "";
-        int[] c = new int[ciphertextTokens.size()];
-
-        for (int i = 0; i < ciphertextTokens.size(); i++) {
-            Token t = ciphertextTokens.get(i);
-            c[i] = t.cIndex;
-            String p;
-            if (t.type == Token.Type.HOMOPHONE && t.cIndex != -1 && cToPforced[t.cIndex] == -1 && cToP[t.cIndex] != -1) {
-                final String pp = pList.get(cToP[t.cIndex]);
-                if (pp.length() == 1) {
-                    p = pp;
-                } else {
-                    p = "%";
-                }
-            } else if (t.type == Token.Type.HOMOPHONE && t.cIndex != -1 && cToPforced[t.cIndex] != -1) {
-                final String pp = pList.get(cToPforced[t.cIndex]);
-                if (pp.length() == 1) {
-                    p = pp;
-                } else {
-                    p = "%";
+        int[] elite = resumed == null && !warm && elites != null && r.nextDouble() < parameters.islandMigrationRate ? elites.sample(r) : null;
+        int round = 0;
+        if (resumed != null) {
+            chain.scorer = fine;
+            chain.seed(resumed.keys[0]);
+            round = resumed.round;
+        } else if (warm) {
+            chain.scorer = fine;
+            chain.seed(cToPwarm);
+            session.event(String.format("Task: %d Cycle: %d - warm start from the current key (%,.0f)", task, cycle, chain.score));
+        } else if (elite != null) {
+            chain.scorer = fine;
+            chain.perturb(elite, parameters.islandPerturbation);
+            round = rounds / 2;
+        } else if (coarse != null) {
+            chain.scorer = coarse;
+            chain.publishing = false;
+            chain.randomize();
+            int coarseRounds = Math.max(1, (int) (parameters.coarseRounds * rounds));
+            for (; round < coarseRounds; round++) {
+                double temp = temperature(r, maxTemp, minTemp, round * rounds / coarseRounds, rounds);
+                if (!chain.round(session, temp, task, cycle, round, rounds)) {
+                    return;
                 }
-            } else {
-                p = "%";
             }
-            pS += p;
+            double coarseScore = chain.score;
+            chain.rescore(fine);
+            session.event(String.format("Task: %d Cycle: %d Round: %d/%d - %d-grams (%,.0f) -> %d-grams (%,.0f)",
+                    task, cycle, round, rounds, coarse.n(), coarseScore, fine.n(), chain.score));
+            round = Math.max(round, rounds / 2);
+        } else {
+            chain.scorer = fine;
+            chain.randomize();
         }
-
-        for (int i = 0; i < ciphertextTokens.size() - params.referenceSequenceLengthForLocking; i++) {
-            String sequence = pS.substring(i, i + params.referenceSequenceLengthForLocking);
-            if (params.referenceSequences.contains(sequence)) {
-                for (int z = 0; z < params.referenceSequenceLengthForLocking; z++) {
-                    final int cIndex = c[i + z];
-                    cToPforced[cIndex] = cToP[cIndex];
-                    //System.out.printf("%s %d %d %d => %d\n", sequence, i, z, cIndex, pIndex);
-
-                }
+        chain.publishing = true;
+        session.improves(chain.score);
+        for (; round < rounds; round++) {
+            // A generator per round, so that a round resumed from a checkpoint runs as it would have.
+            chain.reseed(session.seed(task, cycle) + round + 1);
+            double temp = temperature(chain.random, maxTemp, minTemp, round, rounds);
+            if (!chain.round(session, temp, task, cycle, round, rounds)) {
+                return;
+            }
+            if (elites != null && ((round + 1) % parameters.islandMigrationInterval == 0 || round == rounds - 1)) {
+                elites.offer(chain.cToP, chain.score);
             }
+            session.snapshot(task, cycle, round + 1, chain.cToP);
         }
-
-    }
-
-    private static void swap(int[] cToP, int c1, int c2) {
-        int keep = cToP[c1];
-        cToP[c1] = cToP[c2];
-        cToP[c2] = keep;
     }
 
-    private static int assign(int[] cToP, int[] homophoneCount, int c, int p) {
-        int previousP = cToP[c];
-        homophoneCount[previousP]--;
-        cToP[c] = p;
-        homophoneCount[p]++;
-        return previousP;
+    private static double temperature(SplittableRandom r, double maxTemp, double minTemp, int round, int rounds) {
+        return minTemp + r.nextDouble() * (maxTemp - minTemp) * (rounds - round + 1) / rounds;
     }
 
-    private static void randomAssignment(int pListSize, int[] cToP, int[] homophoneCounts, int[] maxHomophones, int[] cToPforced) {
+    private static void updateForced(CryptanalysisParameters params, ArrayList<Token> ciphertextTokens, ArrayList<String> pList, int[] cToP, int[] cToPforced) {
 
-        int maxAssignableHomophones = 0;
-        for (int p = 0; p < pListSize; p++) {
-            maxAssignableHomophones += maxHomophones[p];
-        }
+        char[] pS = new char[ciphertextTokens.size()];
+        int[] c = new int[ciphertextTokens.size()];
 
-        Arrays.fill(cToP, -1);
-        int cListSize = cToP.length;
-        int assignedHomophones = 0;
-
-        if (cToPforced != null) {
-            for (int c = 0; c < cListSize; c++) {
-                int forcedP = cToPforced[c];
-                if (forcedP != -1) {
-                    cToP[c] = forcedP;
-                    homophoneCounts[forcedP]++;
-                    assignedHomophones++;
-                }
+        for (int i = 0; i < ciphertextTokens.size(); i++) {
+            Token t = ciphertextTokens.get(i);
+            c[i] = t.cIndex;
+            int p = -1;
+            if (t.type == Token.Type.HOMOPHONE && t.cIndex != -1) {
+                p = cToPforced[t.cIndex] != -1 ? cToPforced[t.cIndex] : cToP[t.cIndex];
             }
+            final String pp = p == -1 ? null : pList.get(p);
+            pS[i] = pp != null && pp.length() == 1 ? pp.charAt(0) : ReferenceSequenceIndex.NO_MATCH;
         }
 
-        while (assignedHomophones < Math.min(maxAssignableHomophones, cListSize)) {
-            int c = new Random().nextInt(cListSize);
-            if (cToP[c] != -1) {
-                continue;
-            }
-            if (cToPforced != null) {
-                int forcedP = cToPforced[c];
-                if (forcedP != -1) {
-                    continue;
-                }
-            }
-            int p = new Random().nextInt(pListSize);
-            while (homophoneCounts[p] >= maxHomophones[p]) {
-                p = (p == pListSize - 1) ? 0 : p + 1;
+        final int length = params.referenceSequences.length();
+        params.referenceSequences.matches(pS, pS.length - 1, (start, hash) -> {
+            for (int z = 0; z < length; z++) {
+                final int cIndex = c[start + z];
+                cToPforced[cIndex] = cToP[cIndex];
             }
-            homophoneCounts[p]++;
-            assignedHomophones++;
-            cToP[c] = p;
-        }
+        });
 
     }
 
-    private static StringBuilder keySb(int task, double score, int cycle, int round, int rounds, double temp, ArrayList<String> pList, ArrayList<String> cList, int[] cToP, int[] cToPforced) {
-        StringBuilder sb = new StringBuilder(String.format("Score: %,10.0f [Task: %d Cycle: %,d Round: %,d/%,d Temp: %.2f Update: %d]\n",
-                score, task, cycle, round, rounds, temp, updates.get() + 1));
+    private static StringBuilder keySb(BestKey key, ArrayList<String> pList, ArrayList<String> cList, int[] cToPforced) {
+        // rounds is 0 if the cycles have no fixed number of rounds (parallel tempering).
+        String round = key.rounds == 0 ? String.format("%,d", key.round) : String.format("%,d/%,d", key.round, key.rounds);
+        StringBuilder sb = new StringBuilder(String.format("Score: %,10.0f [Task: %d Cycle: %,d Round: %s Temp: %.2f Update: %d]\n",
+                key.score, key.task, key.cycle, round, key.temp, key.update));
+        int[] cToP = key.cToP;
 
         Map<String, Set<String>> homophones = new TreeMap<>();
 
@@ -444,31 +397,36 @@ public class Cryptanalysis {
         return sb;
     }
 
-    private static double[] stats(CryptanalysisParameters parameters, int pListSize) {
-        switch (parameters.ngrams) {
-            case 4:
-                return Ngrams4.stats(parameters.referenceTokens, pListSize, parameters.removeSpaces);
-            case 5:
-                return Ngrams5.stats(parameters.referenceTokens, pListSize, parameters.removeSpaces);
-            case 6:
-                return Ngrams6.stats(parameters.referenceTokens, pListSize, parameters.removeSpaces);
-
+    private static NgramModel stats(CryptanalysisParameters parameters, int n) {
+        parameters.readCorpus();
+        Corpus corpus = parameters.corpus;
+        List<String> pList = corpus.alphabet();
+        int pListSize = corpus.dim();
+        int[] pCounts = corpus.counts();
+
+        if (!NgramModel.fitsDense(n, pListSize)) {
+            int minCount = n >= CryptanalysisParameters.PRUNED_MODEL_MIN_NGRAMS ? parameters.prunedModelMinCount : 1;
+            return SparseNgramModel.stats(corpus, n, minCount)
+                    .withAlphabet(pList, pCounts);
         }
-        throw new RuntimeException("Invalid ngrams: " + parameters.ngrams);
-    }
-
-    private static double score(CryptanalysisParameters parameters, int[] cToP, int[] ciphertextTokenIndices, double[] stats, int pListSize, double[] pCounts) {
-
-        switch (parameters.ngrams) {
+        double[] stats;
+        switch (n) {
+            case 3:
+                stats = Ngrams3.stats(corpus);
+                break;
             case 4:
-                return Ngrams4.score(cToP, ciphertextTokenIndices, stats, pListSize, pCounts);
+                stats = Ngrams4.stats(corpus);
+                break;
             case 5:
-                return Ngrams5.score(cToP, ciphertextTokenIndices, stats, pListSize, pCounts);
+                stats = Ngrams5.stats(corpus);
+                break;
             case 6:
-                return Ngrams6.score(cToP, ciphertextTokenIndices, stats, pListSize, pCounts);
-
+                stats = Ngrams6.stats(corpus);
+                break;
+            default:
+                throw new RuntimeException("Invalid ngrams: " + n);
         }
-        throw new RuntimeException("Invalid ngrams: " + parameters.ngrams);
+        return NgramModel.of(n, pListSize, stats, parameters.quantizedModel).withAlphabet(pList, pCounts);
     }
 
 }
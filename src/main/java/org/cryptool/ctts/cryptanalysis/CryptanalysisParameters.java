@@ -16,13 +16,19 @@
 
 package org.cryptool.ctts.cryptanalysis;
 
+import org.cryptool.ctts.grams.Corpus;
 import org.cryptool.ctts.grams.Language;
-import org.cryptool.ctts.util.Token;
+import org.cryptool.ctts.util.Key;
 
 import java.util.*;
 
 public class CryptanalysisParameters {
 
+    // From this order up, the n-gram models are pruned (see prunedModelMinCount).
+    public static final int PRUNED_MODEL_MIN_NGRAMS = 7;
+    // Order of the model the pruned models back off to.
+    public static final int BACKOFF_NGRAMS = 5;
+
     public Language language;
     public boolean uToV;
     public boolean wToV;
@@ -38,16 +44,92 @@ public class CryptanalysisParameters {
     public int minCount = 3;
     public boolean ignoreCurrentKey = true;
     public int ngrams = 5;
+    // 16-bit n-gram tables, see QuantizedNgramModel for the error bound. Opt-in, as scores change slightly. Only the
+    // memory of the built model is reduced: building still fills the full double table before quantizing it.
+    public boolean quantizedModel = false;
+    // 7- and 8-gram models only keep the n-grams seen at least this many times in the reference text.
+    public int prunedModelMinCount = 2;
+    // Weight of the 5-gram value for the 7- and 8-grams not in the pruned model (0 for no backoff).
+    public double backoffWeight = 0.4;
+    // Coarse-to-fine: each cycle from a random key first runs a fraction (coarseRounds) of its rounds scored with
+    // the cheaper coarseNgrams-gram model, to get into the right basin quickly, then switches to the ngrams model.
+    public boolean coarseToFine = false;
+    public int coarseNgrams = 4;
+    public double coarseRounds = 0.3;
+    // If above 0, the ngrams model is interpolated with the coarseNgrams model, with this weight for the latter.
+    public double interpolationWeight = 0;
+    // Number of SA workers. If 0, cpuShare of the available cores is used (the default leaves room for the GUI).
+    public int workers = 0;
+    public double cpuShare = 0.25;
+    // Work-stealing pool (ForkJoinPool) for the restarts, otherwise a fixed thread pool.
+    public boolean workStealing = true;
+    public Engine engine = Engine.RESTARTS;
+    public Acceptance acceptance = Acceptance.METROPOLIS;
+    // Late acceptance hill climbing: number of moves after which the current score becomes the threshold.
+    public int lateAcceptanceLength = 1000;
+    // Parallel tempering: number of chains, and the temperatures of the coldest and hottest chains.
+    public int replicas = 8;
+    public double temperingMinTemp = 1_000;
+    public double temperingMaxTemp = 50_000;
+    // Island model: size of the shared elite pool, probability that a cycle restarts from a (perturbed) elite key
+    // rather than a random one, how often (in rounds) workers offer their key to the pool, and the fraction of
+    // homophones reassigned when perturbing an elite key.
+    public int islandPoolSize = 16;
+    public double islandMigrationRate = 0.5;
+    public int islandMigrationInterval = 50;
+    public double islandPerturbation = 0.1;
+    // Tabu search: iterations during which a homophone may not move back to a letter it left, and end of a cycle after
+    // tabuStall iterations without a new best, or after tabuIterations.
+    public int tabuTenure = 20;
+    public int tabuStall = 100;
+    public int tabuIterations = 2_000;
+    // Gibbs sampling: sweeps per cycle, and the temperatures of the first and last sweeps.
+    public int gibbsSweeps = 200;
+    public double gibbsMaxTemp = 20_000;
+    public double gibbsMinTemp = 200;
+
+    // Limits after which a run stops by itself (0 for none): wall-clock time, candidate keys scored, and cycles of all
+    // the workers together without a new best score.
+    public long timeBudgetSeconds = 0;
+    public long maxEvaluations = 0;
+    public long stallCycles = 0;
+
+    // Checkpoints: file in the working directory (null for none), how often it is written, and whether to resume from
+    // it if it exists.
+    public String checkpointFile = null;
+    public long checkpointIntervalSeconds = 60;
+    public boolean resume = false;
+
+    // Warm start: the first cycle of each worker starts from the current key (the homophones which are not locked being
+    // only starting values), for warmStartRounds rounds, with temperatures up to warmStartMaxTemp instead of 100,000.
+    // Requires ignoreCurrentKey to be false.
+    public boolean warmStart = false;
+    public int warmStartRounds = 50;
+    public double warmStartMaxTemp = 5_000;
 
     Map<String, String> lockedHomophones = new TreeMap<>();
-    ArrayList<Token> referenceTokens = null;
+    Map<String, String> startingKey = new TreeMap<>();
+    Corpus corpus = null;
     int referenceSequenceLengthForLocking = 12;
-    Set<String> referenceSequences = null;
+    ReferenceSequenceIndex referenceSequences = null;
+    private String corpusKey = null;
 
-    CryptanalysisParameters(Language language) {
+    public CryptanalysisParameters(Language language) {
         updateLanguage(language);
     }
 
+    public Corpus corpus() {
+        return corpus;
+    }
+
+    int workers(int maxTasks) {
+        int workers = this.workers;
+        if (workers <= 0) {
+            workers = (int) (Runtime.getRuntime().availableProcessors() * Math.min(1.0, Math.max(0.0, cpuShare)));
+        }
+        return Math.max(1, Math.min(maxTasks, workers));
+    }
+
     public void updateLanguage(Language language) {
         this.language = language;
         uToV = wToV = jToI = yToI = zToS = kToC = removeDoubles = removeX = removeH = false;
@@ -72,10 +154,83 @@ public class CryptanalysisParameters {
         }
     }
 
-    public void readTokens() {
-        referenceTokens = new ArrayList<>();
+    // Identifies the normalized reference text.
+    public String corpusKey() {
+        StringBuilder key = new StringBuilder(language.toString());
+        String[] names = {"uToV", "wToV", "jToI", "yToI", "zToS", "kToC", "removeX", "removeH", "removeSpaces", "removeDoubles"};
+        boolean[] flags = {uToV, wToV, jToI, yToI, zToS, kToC, removeX, removeH, removeSpaces, removeDoubles};
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i]) {
+                key.append("-").append(names[i]);
+            }
+        }
+        return key.toString();
+    }
+
+    // Reads the locked homophones (forced) and, for a warm start, the other homophones (starting values) of the key,
+    // in the normalized plaintext alphabet.
+    public void currentKey(Key key) {
+        lockedHomophones.clear();
+        startingKey.clear();
+        if (!key.isKeyAvailable() || ignoreCurrentKey) {
+            return;
+        }
+        readCorpus();
+        Set<String> distinctPlaintext = new TreeSet<>(corpus.alphabet());
+        for (String c : key.keySet()) {
+            String p = normalized(key.get(c));
+            if (!distinctPlaintext.contains(p)) {
+                continue;
+            }
+            if (key.lockedHomophoneP(c)) {
+                lockedHomophones.put(c, p);
+            } else if (warmStart) {
+                startingKey.put(c, p);
+            }
+        }
+    }
+
+    private String normalized(String p) {
+        String pLowerCase = p.toLowerCase(Locale.ROOT);
+        if (jToI && pLowerCase.equals("j")) {
+            pLowerCase = "i";
+        }
+        if (yToI && pLowerCase.equals("y")) {
+            pLowerCase = "i";
+        }
+        if (uToV && pLowerCase.equals("u")) {
+            pLowerCase = "v";
+        }
+        if (wToV && pLowerCase.equals("w")) {
+            pLowerCase = "v";
+        }
+        if (zToS && pLowerCase.equals("z")) {
+            pLowerCase = "s";
+        }
+        if (kToC && pLowerCase.equals("k")) {
+            pLowerCase = "c";
+        }
+        return pLowerCase;
+    }
+
+    // Identifies the compiled n-gram model.
+    public String modelKey() {
+        return modelKey(ngrams);
+    }
+
+    String modelKey(int ngrams) {
+        return corpusKey() + "-" + ngrams + (quantizedModel ? "q" : "") + "grams"
+                + (ngrams >= PRUNED_MODEL_MIN_NGRAMS ? "-min" + prunedModelMinCount : "");
+    }
+
+    public void readCorpus() {
+        if (corpus != null && corpusKey().equals(corpusKey)) {
+            return;
+        }
+        corpusKey = corpusKey();
 
         StringBuilder sb = Language.readFileAZSpaceOnly(language);
+        StringBuilder text = new StringBuilder(sb.length());
         char last = ' ';
         for (char c : sb.toString().toCharArray()) {
             switch (c) {
@@ -124,26 +279,20 @@ public class CryptanalysisParameters {
             if (c == last && removeDoubles) {
                 continue;
             }
-            if (c == ' ') {
-                if (!removeSpaces) {
-                    referenceTokens.add(new Token(Token.Type.OTHER, "", " "));
-                }
-            } else {
-                referenceTokens.add(new Token(Token.Type.HOMOPHONE, "", "" + c));
+            if (c != ' ' || !removeSpaces) {
+                text.append(c);
             }
             last = c;
         }
+        corpus = Corpus.of(text);
 
     }
 
     public void referenceSequences() {
-        referenceSequences = new TreeSet<>();
-        StringBuilder p = new StringBuilder();
-        for (Token t : referenceTokens) {
-            p.append(t.p);
-        }
-        for (int i = 0; i < p.length() - referenceSequenceLengthForLocking; i++) {
-            referenceSequences.add(p.substring(i, i + referenceSequenceLengthForLocking));
-        }
+        referenceSequences = ReferenceSequenceIndex.get(corpusKey(), corpus, referenceSequenceLengthForLocking);
     }
+
+    public enum Engine {RESTARTS, PARALLEL_TEMPERING, ISLANDS, TABU, GIBBS}
+
+    public enum Acceptance {METROPOLIS, THRESHOLD, LATE_ACCEPTANCE}
 }
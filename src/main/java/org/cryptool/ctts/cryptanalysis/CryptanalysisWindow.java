@@ -39,6 +39,7 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import javafx.util.Duration;
+import javafx.util.StringConverter;
 import org.cryptool.ctts.CTTSApplication;
 import org.cryptool.ctts.grams.Language;
 import org.cryptool.ctts.gui.DetailedTranscriptionPane;
@@ -71,7 +72,13 @@ public class CryptanalysisWindow {
     static ChoiceBox<String> maxHomophonesChoiceBox = choiceBox();
     static ChoiceBox<String> minCountChoiceBox = choiceBox();
     static ChoiceBox<String> minMatchingLengthForLockingChoiceBox = choiceBox();
+    static ChoiceBox<CryptanalysisParameters.Engine> engineChoiceBox = choiceBox();
+    static ChoiceBox<CryptanalysisParameters.Acceptance> acceptanceChoiceBox = choiceBox();
+    // Order of the n-grams to start with (coarse-to-fine), 0 for off.
+    static ChoiceBox<Integer> coarseChoiceBox = choiceBox();
     static CheckBox ignoreCurrentKey = checkBox("Ignore current key");
+    static CheckBox warmStart = checkBox("Start from current key");
+    static CheckBox resume = checkBox("Resume from checkpoint");
     static VBox decryptionVBox = new VBox();
     static VBox keyVBox = new VBox();
     static Text plaintextSymbolTypes = text();
@@ -81,6 +88,8 @@ public class CryptanalysisWindow {
     static Text ciphertextSymbolTypes = text();
     static Text ciphertextSymbolTypesFiltered = text();
     static Text comments = text();
+    // Last event of the session (e.g. coarse-to-fine switch), shown below the score.
+    static String lastEvent = null;
     static Circle blink = new Circle(Utils.adjust(20));
     static Button startStop = button("Start Cryptanalysis");
     static Button save = button("Save Key");
@@ -91,6 +100,7 @@ public class CryptanalysisWindow {
 
     static Timeline tl = null;
     static AtomicBoolean slowUpdate = new AtomicBoolean(false);
+    static SolverSession session = null;
 
     static int iteration = 0;
 
@@ -138,10 +148,11 @@ public class CryptanalysisWindow {
                 .addAll(new HBox(text("Ngrams for scoring: "), hRegion(1), ngramChoiceBox, hRegion(2),
                         text("Minimum length of plausible decrypted sequence for homophone auto-locking: "),
                         hRegion(1),
-                        minMatchingLengthForLockingChoiceBox), vRegion(1));
+                        minMatchingLengthForLockingChoiceBox, hRegion(2), text("Start with n-grams: "), hRegion(1),
+                        coarseChoiceBox), vRegion(1));
         languageParametersVBox.getChildren()
                 .addAll(new HBox(text("Maximum homophones per letter: "), hRegion(1), maxHomophonesChoiceBox,
-                        hRegion(1), ignoreCurrentKey, hRegion(1), text("Distinct letter types:      "), hRegion(1),
+                        hRegion(1), ignoreCurrentKey, hRegion(1), warmStart, hRegion(1), resume, hRegion(1), text("Distinct letter types:      "), hRegion(1),
                         plaintextSymbolTypes, hRegion(1),
                         text("Maximum number of symbol types that can be assigned: "), hRegion(1),
                         assignableCiphertextSymbolTypes));
@@ -170,7 +181,9 @@ public class CryptanalysisWindow {
                 new HBox(text("Total distinct ciphertext symbol types: "), hRegion(1), ciphertextSymbolTypes),
                 vRegion(1));
         inputParametersVBox.getChildren().addAll(new HBox(text("Symbol types to be assigned: "), hRegion(1),
-                ciphertextSymbolTypesFiltered, hRegion(1)));
+                ciphertextSymbolTypesFiltered, hRegion(1)), vRegion(1));
+        inputParametersVBox.getChildren().addAll(new HBox(text("Search: "), hRegion(1), engineChoiceBox, hRegion(1),
+                text("Acceptance: "), hRegion(1), acceptanceChoiceBox));
 
         languageChoiceBox.getItems().clear();
         for (Language l : Language.values()) {
@@ -211,10 +224,47 @@ public class CryptanalysisWindow {
         });
 
         ngramChoiceBox.getItems().clear();
-        for (String v : new String[]{"4", "5", "6"}) {
+        for (String v : new String[]{"4", "5", "6", "7", "8"}) {
             ngramChoiceBox.getItems().add(v);
         }
         ngramChoiceBox.setOnAction(e -> {
+            if (callback) {
+                coarseChoices(Integer.parseInt(ngramChoiceBox.getValue()));
+                readParameters();
+            }
+        });
+
+        coarseChoiceBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Integer n) {
+                return n == null ? "" : n == 0 ? "Off" : n.toString();
+            }
+
+            @Override
+            public Integer fromString(String s) {
+                return s.equals("Off") ? 0 : Integer.valueOf(s);
+            }
+        });
+        coarseChoices(params.ngrams);
+        coarseChoiceBox.setOnAction(e -> {
+            if (callback)
+                readParameters();
+        });
+
+        engineChoiceBox.getItems().clear();
+        for (CryptanalysisParameters.Engine engine : CryptanalysisParameters.Engine.values()) {
+            engineChoiceBox.getItems().add(engine);
+        }
+        engineChoiceBox.setOnAction(e -> {
+            if (callback)
+                readParameters();
+        });
+
+        acceptanceChoiceBox.getItems().clear();
+        for (CryptanalysisParameters.Acceptance acceptance : CryptanalysisParameters.Acceptance.values()) {
+            acceptanceChoiceBox.getItems().add(acceptance);
+        }
+        acceptanceChoiceBox.setOnAction(e -> {
             if (callback)
                 readParameters();
         });
@@ -222,7 +272,7 @@ public class CryptanalysisWindow {
         vBox.getChildren().add(new HBox(languageParametersVBox, inputParametersVBox));
 
         for (CheckBox cb : new CheckBox[]{uToV, wToV, jToI, yToI, zToS, kToC, removeDoubledLetters, removeSpaces,
-                removeX, removeH, ignoreCurrentKey}) {
+                removeX, removeH, ignoreCurrentKey, warmStart, resume}) {
             cb.setMinWidth(Utils.adjust(125));
             cb.setOnAction(e -> {
                 if (callback)
@@ -237,101 +287,68 @@ public class CryptanalysisWindow {
             b.setFont(bigButtons);
         }
         close.setOnAction(arg0 -> {
-            Cryptanalysis.stop();
+            stop();
             myDialog.close();
         });
 
         startStop.setOnAction(arg0 -> {
-            synchronized (Cryptanalysis.keySb) {
+            if (running()) {
+                stop();
+                progressBar.setProgress(0.0);
 
-                if (Cryptanalysis.started.get()) {
-                    Cryptanalysis.stop();
-                    progressBar.setProgress(0.0);
-
-                    ngramChoiceBox.getParent().getParent().setDisable(false);
-                    minCountChoiceBox.getParent().getParent().setDisable(false);
+                ngramChoiceBox.getParent().getParent().setDisable(false);
+                minCountChoiceBox.getParent().getParent().setDisable(false);
 
 
-                } else {
+            } else {
 
-                    int toAssign = Integer.parseInt(ciphertextSymbolTypesFiltered.getText().split(" ")[0]);
-                    int assignable = Integer.parseInt(assignableCiphertextSymbolTypes.getText());
-                    if (toAssign > assignable) {
-                        comments.setText(String.format(
-                                "Too many ciphertext symbol types - %d - but only %d can be assigned as homophones. " +
-                                        "Increase 'Maximum homophones per letter' or increase 'Minimum ciphertext symbol count'.",
-                                toAssign, assignable));
-                        return;
-                    }
+                int toAssign = Integer.parseInt(ciphertextSymbolTypesFiltered.getText().split(" ")[0]);
+                int assignable = Integer.parseInt(assignableCiphertextSymbolTypes.getText());
+                if (toAssign > assignable) {
+                    comments.setText(String.format(
+                            "Too many ciphertext symbol types - %d - but only %d can be assigned as homophones. " +
+                                    "Increase 'Maximum homophones per letter' or increase 'Minimum ciphertext symbol count'.",
+                            toAssign, assignable));
+                    return;
+                }
 
-                    comments.setText("Starting ...");
+                comments.setText("Starting ...");
+                lastEvent = null;
 
-                    ArrayList<Token> tokens = tokens(params);
+                ArrayList<Token> tokens = tokens(params);
 
-                    params.readTokens();
-                    params.referenceSequences();
+                params.readCorpus();
+                params.referenceSequences();
 
-                    params.lockedHomophones.clear();
-                    if (CTTSApplication.key.isKeyAvailable() && !params.ignoreCurrentKey) {
-                        Set<String> distinctPlaintext = new TreeSet<>();
-                        for (Token t : params.referenceTokens) {
-                            if (t.type == Token.Type.HOMOPHONE) {
-                                distinctPlaintext.add(t.p);
-                            }
-                        }
-                        for (String c : CTTSApplication.key.keySet()) {
-                            final String p = CTTSApplication.key.get(c);
-                            String pLowerCase = p.toLowerCase(Locale.ROOT);
-                            if (params.jToI && pLowerCase.equals("j")) {
-                                pLowerCase = "i";
-                            }
-                            if (params.yToI && pLowerCase.equals("y")) {
-                                pLowerCase = "i";
-                            }
-                            if (params.uToV && pLowerCase.equals("u")) {
-                                pLowerCase = "v";
-                            }
-                            if (params.wToV && pLowerCase.equals("w")) {
-                                pLowerCase = "v";
-                            }
-                            if (params.zToS && pLowerCase.equals("z")) {
-                                pLowerCase = "s";
-                            }
-                            if (params.kToC && pLowerCase.equals("k")) {
-                                pLowerCase = "c";
-                            }
+                params.currentKey(CTTSApplication.key);
+                TreeMap<String, Integer> tokenCounts = tokenCiphertextCounts(tokens);
 
-                            if (CTTSApplication.key.lockedHomophoneP(c)) {
-                                if (distinctPlaintext.contains(pLowerCase)) {
-                                    params.lockedHomophones.put(c, pLowerCase);
-                                }
-                            }
-
-                        }
-                    }
-                    TreeMap<String, Integer> tokenCounts = tokenCiphertextCounts(tokens);
-
-                    for (Token t : tokens) {
-                        if (t.type == Token.Type.HOMOPHONE && tokenCounts.get(t.c) < params.minCount) {
-                            t.type = Token.Type.OTHER;
-                        }
+                for (Token t : tokens) {
+                    if (t.type == Token.Type.HOMOPHONE && tokenCounts.get(t.c) < params.minCount) {
+                        t.type = Token.Type.OTHER;
                     }
+                }
 
-                    ngramChoiceBox.getParent().getParent().setDisable(true);
-                    minCountChoiceBox.getParent().getParent().setDisable(true);
-                    Cryptanalysis.solve(tokens, params, CryptanalysisWindow.slowUpdate.get() ? 1 : 1000);
+                ngramChoiceBox.getParent().getParent().setDisable(true);
+                minCountChoiceBox.getParent().getParent().setDisable(true);
+                // Saved to the document's folder while the cryptanalysis runs, see 'Resume from checkpoint'.
+                params.checkpointFile = "cryptanalysis.checkpoint";
+                try {
+                    session = Cryptanalysis.solve(tokens, params, CryptanalysisWindow.slowUpdate.get() ? 1 : 1000);
+                } catch (RuntimeException e) {
+                    comments.setText(e.getMessage());
+                    ngramChoiceBox.getParent().getParent().setDisable(false);
+                    minCountChoiceBox.getParent().getParent().setDisable(false);
                 }
             }
 
         });
 
         save.setOnAction(arg0 -> {
-            synchronized (Cryptanalysis.keySb) {
-                if (Cryptanalysis.keySb.length() == 0) {
-                    return;
-                }
+            if (session == null || session.bestKey().length() == 0) {
+                return;
             }
-            Cryptanalysis.stop();
+            stop();
             boolean save = false;
 
             if (CTTSApplication.key.isKeyAvailable()) {
@@ -358,7 +375,7 @@ public class CryptanalysisWindow {
             if (save) {
                 myDialog.close();
 
-                replaceKey(params, Cryptanalysis.keySb);
+                replaceKey(params, session.bestKey());
 
                 CTTSApplication.fullKeyChanged();
             }
@@ -436,7 +453,7 @@ public class CryptanalysisWindow {
             tl = new Timeline(
                     new KeyFrame(Duration.millis(0.1 * Math.min(maxSymbols, TranscribedImage.totalSymbols())),
                             event -> {
-                                if (Cryptanalysis.started.get()) {
+                                if (running()) {
                                     if (startStop.getText().contains("Start")) {
                                         startStop.setText("Stop Cryptanalysis");
                                         blink.setFill(Color.GREEN);
@@ -448,10 +465,14 @@ public class CryptanalysisWindow {
                                     StringBuilder keySb = null;
                                     StringBuilder results = null;
 
+                                    for (String e = session.pollEvent(); e != null; e = session.pollEvent()) {
+                                        lastEvent = e;
+                                    }
+
                                     if (CryptanalysisWindow.slowUpdate.get()) {
                                         String res = null;
                                         int step = 1;
-                                        final int size = Cryptanalysis.sequence.size();
+                                        final int size = session.sequenceSize();
                                         if (size <= 20) {
                                             step = 1;
                                         } else if (size <= 40) {
@@ -464,7 +485,7 @@ public class CryptanalysisWindow {
                                             step = 5;
                                         }
                                         for (int i = 0; i < step; i++) {
-                                            res = (String) Cryptanalysis.sequence.poll();
+                                            res = session.pollSequence();
                                             iteration++;
                                         }
                                         if (res != null && !res.isEmpty()) {
@@ -473,24 +494,22 @@ public class CryptanalysisWindow {
                                             String updateString = status.substring(status.indexOf("Update: ") + 8);
                                             updateString = updateString.substring(0, updateString.length() - 1);
                                             double progress = Double.parseDouble(updateString)
-                                                    / Cryptanalysis.updates.get();
+                                                    / session.updates();
                                             status = status.replaceAll("]",
-                                                    String.format("/%,d]", Cryptanalysis.updates.get()));
+                                                    String.format("/%,d]", session.updates()));
                                             status = status.replaceAll(" \\[",
-                                                    String.format("/%,.3f [", Cryptanalysis.bestOverall));
+                                                    String.format("/%,.3f [", session.bestScore()));
                                             results = new StringBuilder(status);
+                                            long dropped = session.sequenceDropped();
+                                            if (dropped > 0) {
+                                                results.append(String.format(" - %,d skipped", dropped));
+                                            }
                                             progressBar.setProgress(progress);
                                         }
                                     } else {
-                                        synchronized (Cryptanalysis.keySb) {
-                                            if (!Cryptanalysis.readUpdate.get()) {
-                                                if (Cryptanalysis.keySb.length() != 0) {
-                                                    keySb = new StringBuilder(Cryptanalysis.keySb);
-                                                    results = new StringBuilder(
-                                                            Cryptanalysis.keySb.toString().split("\n")[0]);
-                                                }
-                                                Cryptanalysis.readUpdate.set(true);
-                                            }
+                                        keySb = session.pollBestKey();
+                                        if (keySb != null) {
+                                            results = new StringBuilder(keySb.toString().split("\n")[0]);
                                         }
                                     }
                                     if (keySb != null) {
@@ -732,7 +751,8 @@ public class CryptanalysisWindow {
                                             }
                                         }
 
-                                        comments.setText(results.toString());
+                                        results.append("\n").append(session.telemetry().summary());
+                                        comments.setText(lastEvent == null ? results.toString() : results + "\n" + lastEvent);
 
                                         if (showKeyOnTopOfDecryption) {
                                             // FileUtils.snapshot("hillclimbing", "d" + iteration, decryptionVBox);
@@ -747,6 +767,15 @@ public class CryptanalysisWindow {
                                         startStop.setText("Start Cryptanalysis");
                                         blink.setFill(Color.LIGHTGRAY);
                                         fadeTransition.stop();
+                                        // The run may have stopped by itself, on one of its limits.
+                                        ngramChoiceBox.getParent().getParent().setDisable(false);
+                                        minCountChoiceBox.getParent().getParent().setDisable(false);
+                                        if (session != null && session.stopReason() != null) {
+                                            comments.setText(comments.getText() + "\nStopped - " + session.stopReason());
+                                        }
+                                        if (session != null) {
+                                            session.telemetry().export("cryptanalysis_telemetry");
+                                        }
                                     }
                                 }
                             }
@@ -756,21 +785,40 @@ public class CryptanalysisWindow {
             tl.play();
         }
 
-        myDialog.getScene().getWindow().addEventFilter(WindowEvent.WINDOW_CLOSE_REQUEST, we -> {
-            synchronized (Cryptanalysis.keySb) {
-                Cryptanalysis.stop();
-            }
-        });
+        myDialog.getScene().getWindow().addEventFilter(WindowEvent.WINDOW_CLOSE_REQUEST, we -> stop());
 
         myDialog.show();
     }
 
-    private static ChoiceBox choiceBox() {
-        final ChoiceBox choiceBox = new ChoiceBox();
+    private static boolean running() {
+        return session != null && session.isRunning();
+    }
+
+    private static void stop() {
+        if (session != null) {
+            session.cancel();
+        }
+    }
+
+    private static <T> ChoiceBox<T> choiceBox() {
+        final ChoiceBox<T> choiceBox = new ChoiceBox<>();
         choiceBox.setStyle("-fx-font-size:" + Utils.adjust(12));
         return choiceBox;
     }
 
+    // Only coarse n-gram orders below the n-gram order for scoring can be chosen (the others would be ignored).
+    private static void coarseChoices(int ngrams) {
+        Integer value = coarseChoiceBox.getValue();
+        List<Integer> choices = new ArrayList<>(List.of(0));
+        for (int n = 3; n <= 5 && n < ngrams; n++) {
+            choices.add(n);
+        }
+        if (!choices.equals(coarseChoiceBox.getItems())) {
+            coarseChoiceBox.getItems().setAll(choices);
+        }
+        coarseChoiceBox.setValue(value != null && choices.contains(value) ? value : 0);
+    }
+
     private static Text text(String s){
         final Text text = new Text(s);
         text.setFont(new Font(Utils.adjust(12)));
@@ -883,6 +931,8 @@ public class CryptanalysisWindow {
         kToC.setSelected(params.kToC);
         zToS.setSelected(params.zToS);
         ignoreCurrentKey.setSelected(params.ignoreCurrentKey);
+        warmStart.setSelected(params.warmStart);
+        resume.setSelected(params.resume);
         removeX.setSelected(params.removeX);
         removeH.setSelected(params.removeH);
         removeDoubledLetters.setSelected(params.removeDoubles);
@@ -897,6 +947,10 @@ public class CryptanalysisWindow {
         }
 
         ngramChoiceBox.setValue("" + params.ngrams);
+        engineChoiceBox.setValue(params.engine);
+        coarseChoices(params.ngrams);
+        coarseChoiceBox.setValue(params.coarseToFine && params.coarseNgrams < params.ngrams ? params.coarseNgrams : 0);
+        acceptanceChoiceBox.setValue(params.acceptance);
         updateCounts();
 
     }
@@ -909,6 +963,8 @@ public class CryptanalysisWindow {
         params.kToC = kToC.isSelected();
         params.zToS = zToS.isSelected();
         params.ignoreCurrentKey = ignoreCurrentKey.isSelected();
+        params.warmStart = warmStart.isSelected();
+        params.resume = resume.isSelected();
         params.removeX = removeX.isSelected();
         params.removeH = removeH.isSelected();
         params.removeDoubles = removeDoubledLetters.isSelected();
@@ -917,6 +973,18 @@ public class CryptanalysisWindow {
             params.minCount = Integer.parseInt(minCountChoiceBox.getValue());
             params.maxHomophones = Integer.parseInt(maxHomophonesChoiceBox.getValue());
             params.ngrams = Integer.parseInt(ngramChoiceBox.getValue());
+            if (coarseChoiceBox.getValue() != null) {
+                params.coarseToFine = coarseChoiceBox.getValue() > 0;
+                if (params.coarseToFine) {
+                    params.coarseNgrams = coarseChoiceBox.getValue();
+                }
+            }
+            if (engineChoiceBox.getValue() != null) {
+                params.engine = engineChoiceBox.getValue();
+            }
+            if (acceptanceChoiceBox.getValue() != null) {
+                params.acceptance = acceptanceChoiceBox.getValue();
+            }
             if (minMatchingLengthForLockingChoiceBox.getValue() != null) {
                 if (minMatchingLengthForLockingChoiceBox.getValue().equals("Disabled")) {
                     params.referenceSequenceLengthForLocking = 1000;
@@ -947,14 +1015,9 @@ public class CryptanalysisWindow {
 
     private static void updateCounts() {
 
-        params.readTokens();
+        params.readCorpus();
 
-        Set<String> distinctPlaintext = new TreeSet<>();
-        for (Token t : params.referenceTokens) {
-            if (t.type == Token.Type.HOMOPHONE) {
-                distinctPlaintext.add(t.p);
-            }
-        }
+        Set<String> distinctPlaintext = new TreeSet<>(params.corpus.alphabet());
         final int plaintextDistinct = distinctPlaintext.size();
 
         final int assignable = Cryptanalysis.assignable(params, plaintextDistinct);
@@ -0,0 +1,99 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// The best distinct keys found so far by all the workers of the island model. Lock-free: a new key replaces the
+// worst one with a CAS, and the keys are immutable once in the pool, so they can be read without copying.
+final class ElitePool {
+
+    private static final class Elite {
+        final int[] cToP;
+        final double score;
+
+        Elite(int[] cToP, double score) {
+            this.cToP = cToP;
+            this.score = score;
+        }
+    }
+
+    // Filled from index 0, so the non-null slots are always a prefix.
+    private final AtomicReferenceArray<Elite> slots;
+
+    ElitePool(int size) {
+        slots = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    // Returns true if the key entered the pool.
+    boolean offer(int[] cToP, double score) {
+        Elite elite = null;
+        while (true) {
+            int worst = -1;
+            Elite worstElite = null;
+            for (int i = 0; i < slots.length(); i++) {
+                Elite e = slots.get(i);
+                if (e == null) {
+                    worst = i;
+                    worstElite = null;
+                    break;
+                }
+                if (e.score == score && Arrays.equals(e.cToP, cToP)) {
+                    return false;
+                }
+                if (worstElite == null || e.score < worstElite.score) {
+                    worst = i;
+                    worstElite = e;
+                }
+            }
+            if (worstElite != null && worstElite.score >= score) {
+                return false;
+            }
+            if (elite == null) {
+                elite = new Elite(Arrays.copyOf(cToP, cToP.length), score);
+            }
+            if (slots.compareAndSet(worst, worstElite, elite)) {
+                return true;
+            }
+        }
+    }
+
+    // A random key from the pool (not to be modified), or null if the pool is still empty.
+    int[] sample(SplittableRandom random) {
+        int size = size();
+        return size == 0 ? null : slots.get(random.nextInt(size)).cToP;
+    }
+
+    // Key and score of entry i < size(), for checkpoints.
+    int[] key(int i) {
+        return slots.get(i).cToP;
+    }
+
+    double score(int i) {
+        return slots.get(i).score;
+    }
+
+    int size() {
+        int size = 0;
+        while (size < slots.length() && slots.get(size) != null) {
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+// Gibbs sampling: a sweep visits each homophone, and draws its letter from the conditional distribution given the rest
+// of the key, P(p) ~ exp(score(c -> p) / temp), over the letters it may be assigned to. The score of each candidate is
+// computed by the incremental scorer, from the occurrences of the homophone only. A cycle starts from a random key
+// and runs sweeps sweeps, the temperature decreasing geometrically from maxTemp to minTemp, so that the last sweeps
+// are close to greedy. Each worker runs its own chain.
+final class GibbsSampler {
+
+    private final Chain chain;
+    private final int task;
+    private final int[] cToPwarm;
+    private final int sweeps;
+    private final double maxTemp;
+    private final double minTemp;
+    private final int pListSize;
+    // Per sweep step, the candidate letters of the homophone and their scores, then weights.
+    private final int[] candidates;
+    private final double[] weights;
+
+    private GibbsSampler(Chain chain, int task, int[] cToPwarm, CryptanalysisParameters parameters) {
+        this.chain = chain;
+        this.task = task;
+        this.cToPwarm = cToPwarm;
+        this.sweeps = parameters.gibbsSweeps;
+        this.maxTemp = parameters.gibbsMaxTemp;
+        this.minTemp = parameters.gibbsMinTemp;
+        this.pListSize = chain.homophoneCounts.length;
+        this.candidates = new int[pListSize];
+        this.weights = new double[pListSize];
+    }
+
+    // With a warm start key (cToPwarm != null), the first cycle starts from it instead of a random key.
+    static void start(SolverSession session, Chain chain, int task, int[] cToPwarm, CryptanalysisParameters parameters) {
+        GibbsSampler gibbs = new GibbsSampler(chain, task, cToPwarm, parameters);
+        session.schedule(task, cycle -> gibbs.cycle(session, cycle));
+    }
+
+    private void cycle(SolverSession session, int cycle) {
+        Checkpoint.Snapshot resumed = session.resumePoint(task, cycle);
+        chain.reseed(session.seed(task, cycle));
+        int sweep = 0;
+        if (resumed != null) {
+            chain.seed(resumed.keys[0]);
+            sweep = resumed.round;
+        } else if (cycle == 0 && cToPwarm != null) {
+            chain.seed(cToPwarm);
+        } else {
+            chain.randomize();
+        }
+        session.improves(chain.score);
+        for (; sweep < sweeps; sweep++) {
+            // A generator per sweep, so that a sweep resumed from a checkpoint runs as it would have.
+            chain.reseed(session.seed(task, cycle) + sweep + 1);
+            double temp = sweeps == 1 ? minTemp : maxTemp * Math.pow(minTemp / maxTemp, (double) sweep / (sweeps - 1));
+            if (!sweep(session, temp, cycle, sweep)) {
+                return;
+            }
+            session.snapshot(task, cycle, sweep + 1, chain.cToP);
+        }
+    }
+
+    // Returns false if the session was cancelled during the sweep.
+    private boolean sweep(SolverSession session, double temp, int cycle, int sweep) {
+        final int[] cToP = chain.cToP;
+        final int cListSize = cToP.length;
+        long evaluations = 0;
+        long accepted = 0;
+        long improvements = 0;
+
+        int shift1 = chain.random.nextInt(cListSize);
+        for (int c_ = 0; c_ < cListSize; c_++) {
+            if (session.isCancelled()) {
+                session.evaluated(task, evaluations, accepted, improvements);
+                return false;
+            }
+            int c = (c_ + shift1) % cListSize;
+            int previousP = cToP[c];
+
+            // The current letter is always a candidate, with the current score.
+            int count = 0;
+            double max = chain.score;
+            candidates[count] = previousP;
+            weights[count++] = chain.score;
+            for (int p = 0; p < pListSize; p++) {
+                if (p == previousP || !chain.canAssign(c, p)) {
+                    continue;
+                }
+                double newScore = chain.assign(c, p);
+                chain.assign(c, previousP);
+                evaluations++;
+                candidates[count] = p;
+                weights[count++] = newScore;
+                max = Math.max(max, newScore);
+            }
+            if (count == 1) {
+                continue;
+            }
+
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                double ratio = (weights[i] - max) / temp;
+                weights[i] = ratio < -20 ? 0 : Math.exp(ratio);
+                sum += weights[i];
+            }
+            double draw = chain.random.nextDouble() * sum;
+            int i = 0;
+            while (i < count - 1 && (draw -= weights[i]) >= 0) {
+                i++;
+            }
+
+            if (candidates[i] != previousP) {
+                chain.score = chain.assign(c, candidates[i]);
+                accepted++;
+                if (session.improves(chain.score)) {
+                    improvements++;
+                    session.publish(cToP, chain.score, task, cycle, sweep, sweeps, temp);
+                }
+            }
+        }
+        session.evaluated(task, evaluations, accepted, improvements);
+        return true;
+    }
+}
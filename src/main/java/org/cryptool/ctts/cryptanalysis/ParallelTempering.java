@@ -0,0 +1,97 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import java.util.SplittableRandom;
+
+// Replica exchange: one chain per temperature of a geometric ladder, each running SA rounds at its fixed temperature,
+// all in parallel. After each round, neighbouring temperatures exchange their chains with probability
+// min(1, exp((1/T_cold - 1/T_hot) * (score_hot - score_cold))), so good keys found by hot chains move down to the
+// cold chains, while bad keys move up, where they can escape local maxima.
+final class ParallelTempering {
+
+    // chains[k] runs at temps[k], from the coldest to the hottest.
+    private final Chain[] chains;
+    private final double[] temps;
+    private SplittableRandom random = new SplittableRandom();
+    private final Runnable[] rounds;
+    private final int[] cToPwarm;
+    private int cycle;
+    private boolean started = false;
+
+    private ParallelTempering(Chain[] chains, int[] cToPwarm, double minTemp, double maxTemp) {
+        this.chains = chains;
+        this.cToPwarm = cToPwarm;
+        this.temps = new double[chains.length];
+        for (int k = 0; k < chains.length; k++) {
+            temps[k] = chains.length == 1 ? minTemp : minTemp * Math.pow(maxTemp / minTemp, (double) k / (chains.length - 1));
+        }
+        rounds = new Runnable[chains.length];
+    }
+
+    // With a warm start key (cToPwarm != null), all the chains start from it instead of random keys.
+    static void start(SolverSession session, Chain[] chains, int[] cToPwarm, double minTemp, double maxTemp) {
+        ParallelTempering pt = new ParallelTempering(chains, cToPwarm, minTemp, maxTemp);
+        session.schedule(0, cycle -> pt.cycle(session, cycle));
+    }
+
+    // One round of all the chains, in parallel, then the exchanges.
+    private void cycle(SolverSession session, int cycle) {
+        this.cycle = cycle;
+        for (int k = 0; k < chains.length; k++) {
+            chains[k].reseed(session.seed(k, cycle));
+        }
+        random = new SplittableRandom(session.seed(chains.length, cycle));
+        Checkpoint.Snapshot resumed = session.resumePoint(0, cycle);
+        if (resumed != null && resumed.keys.length == chains.length) {
+            for (int k = 0; k < chains.length; k++) {
+                chains[k].seed(resumed.keys[k]);
+                session.improves(chains[k].score);
+            }
+            started = true;
+        } else if (!started) {
+            started = true;
+            for (Chain chain : chains) {
+                if (cToPwarm != null) {
+                    chain.seed(cToPwarm);
+                } else {
+                    chain.randomize();
+                }
+                session.improves(chain.score);
+            }
+        }
+        for (int k = 0; k < chains.length; k++) {
+            final Chain chain = chains[k];
+            final int level = k;
+            // Each cycle is a single round of the chains, so the round is the number of rounds so far, with no total.
+            rounds[k] = () -> chain.round(session, temps[level], level, this.cycle, this.cycle, 0);
+        }
+        if (!session.invokeAll(rounds)) {
+            return;
+        }
+        // Alternate between the even and odd pairs of neighbours.
+        for (int k = cycle % 2; k + 1 < chains.length; k += 2) {
+            double delta = (1 / temps[k] - 1 / temps[k + 1]) * (chains[k + 1].score - chains[k].score);
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta)) {
+                Chain colder = chains[k + 1];
+                chains[k + 1] = chains[k];
+                chains[k] = colder;
+            }
+        }
+        session.snapshot(0, cycle + 1, 0, chains);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+// Bounded FIFO for the slow-update replay. When full, the oldest entry is dropped, so memory does not grow with the
+// length of the run, and the display skips ahead instead of falling further and further behind.
+final class ProgressRing<T> {
+    private final Object[] entries;
+    private long head = 0;
+    private long tail = 0;
+    private long dropped = 0;
+
+    ProgressRing(int capacity) {
+        entries = new Object[capacity];
+    }
+
+    synchronized void offer(T entry) {
+        if (tail - head == entries.length) {
+            entries[(int) (head++ % entries.length)] = null;
+            dropped++;
+        }
+        entries[(int) (tail++ % entries.length)] = entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized T poll() {
+        if (head == tail) {
+            return null;
+        }
+        int index = (int) (head++ % entries.length);
+        T entry = (T) entries[index];
+        entries[index] = null;
+        return entry;
+    }
+
+    synchronized int size() {
+        return (int) (tail - head);
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+}
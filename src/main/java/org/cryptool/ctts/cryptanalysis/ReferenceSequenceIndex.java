@@ -0,0 +1,189 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import org.cryptool.ctts.grams.Corpus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// All the sequences of a given length in the reference text, as 64-bit polynomial rolling hashes in an open-addressing
+// long table (about 16 bytes per sequence, instead of a String per sequence in a TreeSet). A text can be matched in
+// one pass, with O(1) work per position. With about 10^6 distinct sequences, the probability of a false match
+// (hash collision) for a given window is below 10^-12.
+final class ReferenceSequenceIndex {
+
+    // Characters which never appear in the reference text (e.g. for unknown or nomenclature symbols).
+    static final char NO_MATCH = '%';
+
+    private static final long BASE = 0x100000001B3L;
+    private static final long EMPTY = 0;
+    private static final Map<String, ReferenceSequenceIndex> indexes = new ConcurrentHashMap<>();
+
+    private final int length;
+    // BASE^(length - 1), to remove the first character of a window from its hash.
+    private final long topPower;
+    private long[] hashes;
+    private int mask;
+    private int size;
+    private boolean hasEmpty;
+
+    private ReferenceSequenceIndex(int length) {
+        this.length = length;
+        long power = 1;
+        for (int i = 1; i < length; i++) {
+            power *= BASE;
+        }
+        this.topPower = power;
+        allocate(1 << 16);
+    }
+
+    // Built once per normalized reference text and length, and shared by all the sessions.
+    static ReferenceSequenceIndex get(String corpusKey, Corpus corpus, int length) {
+        return indexes.computeIfAbsent(corpusKey + "-" + length, k -> build(corpus, length));
+    }
+
+    private static ReferenceSequenceIndex build(Corpus corpus, int length) {
+        ReferenceSequenceIndex index = new ReferenceSequenceIndex(length);
+        char[] text = new char[corpus.length()];
+        int len = 0;
+        for (int i = 0; i < corpus.length(); i++) {
+            text[len++] = corpus.charAt(i);
+        }
+        // As before, the last window of the text is not included.
+        index.scan(text, len - 1, (start, hash) -> index.add(hash));
+        return index;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(CharSequence s) {
+        if (s.length() != length) {
+            return false;
+        }
+        long hash = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == NO_MATCH) {
+                return false;
+            }
+            hash = hash * BASE + c;
+        }
+        return containsHash(hash);
+    }
+
+    interface Match {
+        void at(int start, long hash);
+    }
+
+    // Calls match for each window of text[0, end) which is in the index.
+    void matches(char[] text, int end, Match match) {
+        scan(text, end, (start, hash) -> {
+            if (containsHash(hash)) {
+                match.at(start, hash);
+            }
+        });
+    }
+
+    // Rolling hash over all the windows of text[0, end) without a NO_MATCH character.
+    private void scan(char[] text, int end, Match window) {
+        long hash = 0;
+        int valid = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text[i];
+            if (c == NO_MATCH) {
+                hash = 0;
+                valid = 0;
+                continue;
+            }
+            if (valid == length) {
+                hash -= text[i - length] * topPower;
+                valid--;
+            }
+            hash = hash * BASE + c;
+            if (++valid == length) {
+                window.at(i - length + 1, hash);
+            }
+        }
+    }
+
+    private boolean containsHash(long hash) {
+        if (hash == EMPTY) {
+            return hasEmpty;
+        }
+        int slot = slot(hash);
+        while (true) {
+            long h = hashes[slot];
+            if (h == hash) {
+                return true;
+            }
+            if (h == EMPTY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void add(long hash) {
+        if (hash == EMPTY) {
+            hasEmpty = true;
+            return;
+        }
+        int slot = slot(hash);
+        while (true) {
+            long h = hashes[slot];
+            if (h == hash) {
+                return;
+            }
+            if (h == EMPTY) {
+                hashes[slot] = hash;
+                if (++size > (hashes.length >> 1)) {
+                    rehash();
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slot(long hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void rehash() {
+        long[] old = hashes;
+        allocate(old.length << 1);
+        for (long hash : old) {
+            if (hash != EMPTY) {
+                add(hash);
+            }
+        }
+    }
+}
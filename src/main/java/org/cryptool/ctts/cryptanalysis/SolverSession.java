@@ -0,0 +1,486 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import java.io.File;
+import java.util.SplittableRandom;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+// State of one cryptanalysis run: its workers, cancellation flag, best key and progress counters.
+// Several sessions (e.g. for different documents or parameters) can run at the same time.
+// A run ends when cancelled, or on its own when it reaches one of its limits (see limits()).
+public class SolverSession {
+
+    private static final AtomicInteger sessions = new AtomicInteger();
+
+    private final ExecutorService executor;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile String stopReason = null;
+    private Timer timer = null;
+    private volatile long maxEvaluations = 0;
+    private volatile long stallCycles = 0;
+    // Cycles completed by all the workers, and the number completed when the best score last improved.
+    private final AtomicLong cycles = new AtomicLong(0);
+    private final AtomicLong cyclesAtImprovement = new AtomicLong(0);
+    // Next cycle of each worker, and the seed of the random generators of the cycles, see seed().
+    private final AtomicIntegerArray nextCycles;
+    private long seed = new SplittableRandom().nextLong();
+
+    // Checkpoints (see Checkpoint), written every checkpointIntervalSeconds by the timer, from the latest snapshots of
+    // the workers (position in their cycle and keys, updated by the workers themselves at the end of each round).
+    private File checkpointFile = null;
+    private int fingerprint = 0;
+    private final AtomicReferenceArray<Checkpoint.Snapshot> snapshots;
+    private Checkpoint resumed = null;
+    private ElitePool elites = null;
+
+    private static final int SEQUENCE_CAPACITY = 1024;
+
+    // Best score so far (as double bits), including scores of keys which were not published (start of a cycle).
+    private final AtomicLong bestOverall = new AtomicLong(Double.doubleToLongBits(-Double.MAX_VALUE));
+    private final AtomicReference<BestKey> best = new AtomicReference<>(null);
+    private final AtomicBoolean readUpdate = new AtomicBoolean(true);
+    private final AtomicLong updates = new AtomicLong(0);
+    private final Telemetry telemetry;
+    private final ProgressRing<BestKey> sequence = new ProgressRing<>(SEQUENCE_CAPACITY);
+    // Notable steps of the search other than new best keys, e.g. coarse-to-fine switches.
+    private final ProgressRing<String> events = new ProgressRing<>(SEQUENCE_CAPACITY);
+    private volatile Function<BestKey, StringBuilder> renderer = key -> new StringBuilder();
+
+    // workers: number of workers (task numbers) for the telemetry.
+    SolverSession(int threads, boolean workStealing, int workers) {
+        final int session = sessions.incrementAndGet();
+        final String name = "cryptanalysis-" + session + "-";
+        telemetry = new Telemetry(workers);
+        telemetry.register(session);
+        nextCycles = new AtomicIntegerArray(workers);
+        snapshots = new AtomicReferenceArray<>(workers);
+        final AtomicInteger threadCount = new AtomicInteger();
+        if (workStealing) {
+            ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + threadCount.incrementAndGet());
+                return thread;
+            };
+            executor = new ForkJoinPool(threads, threadFactory, null, true);
+        } else {
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, name + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executor = Executors.newFixedThreadPool(threads, threadFactory);
+        }
+    }
+
+    // Runs cycle 0, 1, 2, ... of a worker (from its next cycle if resumed) as separate tasks, until the session is
+    // cancelled. Each cycle is an independent restart, so idle threads of the pool can pick up the next cycle of any
+    // worker.
+    void schedule(int worker, IntConsumer cycles) {
+        activeWorkers.incrementAndGet();
+        Checkpoint.Snapshot snapshot = resumed == null || worker >= resumed.snapshots.length ? null : resumed.snapshots[worker];
+        execute(worker, cycles, Math.max(nextCycles.get(worker), snapshot == null ? 0 : snapshot.cycle));
+    }
+
+    private void execute(int worker, IntConsumer cycles, int cycle) {
+        try {
+            executor.execute(() -> {
+                boolean next = false;
+                try {
+                    if (!cancelled.get()) {
+                        cycles.accept(cycle);
+                        next = !cancelled.get();
+                    }
+                    if (next) {
+                        nextCycles.set(worker, cycle + 1);
+                        if (stallCycles > 0 && this.cycles.incrementAndGet() - cyclesAtImprovement.get() >= stallCycles) {
+                            stop(String.format("no improvement in %,d cycles", stallCycles));
+                            next = false;
+                        }
+                    }
+                } finally {
+                    if (next) {
+                        execute(worker, cycles, cycle + 1);
+                    } else {
+                        workerDone();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            workerDone();
+        }
+    }
+
+    // Seed of the random generator of a cycle of a worker, so that a resumed cycle runs as it would have.
+    long seed(int worker, int cycle) {
+        return seed + worker * 0x9E3779B97F4A7C15L + cycle * 0xBF58476D1CE4E5B9L;
+    }
+
+    // Writes a checkpoint to file every intervalSeconds. fingerprint identifies the document and parameters.
+    void checkpoints(File file, long intervalSeconds, int fingerprint) {
+        this.checkpointFile = file;
+        this.fingerprint = fingerprint;
+        long interval = 1000 * Math.max(1, intervalSeconds);
+        timer().schedule(new TimerTask() {
+            @Override
+            public void run() {
+                checkpoint();
+            }
+        }, interval, interval);
+    }
+
+    // Picks up the state of a checkpoint, if saved with the same fingerprint (see checkpoints()). Must be called before
+    // checkpoints() and before the workers are scheduled.
+    void resume(Checkpoint checkpoint, int fingerprint) {
+        if (checkpoint.fingerprint != fingerprint) {
+            throw new RuntimeException("The checkpoint was saved for another document or other parameters");
+        }
+        resumed = checkpoint;
+        seed = checkpoint.seed;
+        updates.set(checkpoint.updates);
+        cycles.set(checkpoint.cycles);
+        cyclesAtImprovement.set(checkpoint.cyclesAtImprovement);
+        bestOverall.set(Double.doubleToLongBits(checkpoint.bestOverall));
+        if (checkpoint.best != null) {
+            best.set(checkpoint.best);
+            sequence.offer(checkpoint.best);
+            readUpdate.set(false);
+        }
+        for (int w = 0; w < Math.min(nextCycles.length(), checkpoint.nextCycles.length); w++) {
+            nextCycles.set(w, checkpoint.nextCycles[w]);
+            snapshots.set(w, checkpoint.snapshots[w]);
+        }
+        telemetry.restore(checkpoint.elapsedSeconds, checkpoint.evaluations, checkpoint.accepted, checkpoint.improvements);
+        event(String.format("Resumed from checkpoint (%,.0f)", checkpoint.bestOverall));
+    }
+
+    // Where a resumed worker left off in cycle, if it had not completed it, null otherwise (and for the next calls).
+    Checkpoint.Snapshot resumePoint(int worker, int cycle) {
+        if (resumed == null || worker >= resumed.snapshots.length) {
+            return null;
+        }
+        synchronized (resumed) {
+            Checkpoint.Snapshot snapshot = resumed.snapshots[worker];
+            resumed.snapshots[worker] = null;
+            return snapshot != null && snapshot.cycle == cycle ? snapshot : null;
+        }
+    }
+
+    // A worker is at the start of round of cycle, with key(s). Only kept if checkpoints are on.
+    void snapshot(int worker, int cycle, int round, int[] key) {
+        if (checkpointFile != null) {
+            snapshots.set(worker, new Checkpoint.Snapshot(cycle, round, new int[][]{key.clone()}));
+        }
+    }
+
+    // Same, with the best score of the cycle so far and the state of the engine (not copied).
+    void snapshot(int worker, int cycle, int round, int[] key, double cycleBest, int[] state) {
+        if (checkpointFile != null) {
+            snapshots.set(worker, new Checkpoint.Snapshot(cycle, round, new int[][]{key.clone()}, cycleBest, state));
+        }
+    }
+
+    void snapshot(int worker, int cycle, int round, Chain[] chains) {
+        if (checkpointFile != null) {
+            int[][] keys = new int[chains.length][];
+            for (int k = 0; k < chains.length; k++) {
+                keys[k] = chains[k].cToP.clone();
+            }
+            snapshots.set(worker, new Checkpoint.Snapshot(cycle, round, keys));
+        }
+    }
+
+    // Registers the elite pool, restoring its keys if resumed.
+    void elites(ElitePool elites) {
+        this.elites = elites;
+        if (resumed != null) {
+            for (int e = 0; e < resumed.elites.length; e++) {
+                elites.offer(resumed.elites[e], resumed.eliteScores[e]);
+            }
+        }
+    }
+
+    private synchronized void checkpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.fingerprint = fingerprint;
+        checkpoint.seed = seed;
+        checkpoint.elapsedSeconds = telemetry.getElapsedSeconds();
+        checkpoint.updates = updates.get();
+        checkpoint.cycles = cycles.get();
+        checkpoint.cyclesAtImprovement = cyclesAtImprovement.get();
+        checkpoint.bestOverall = bestScore();
+        checkpoint.best = best.get();
+        int workers = nextCycles.length();
+        checkpoint.nextCycles = new int[workers];
+        checkpoint.snapshots = new Checkpoint.Snapshot[workers];
+        for (int w = 0; w < workers; w++) {
+            checkpoint.nextCycles[w] = nextCycles.get(w);
+            Checkpoint.Snapshot snapshot = snapshots.get(w);
+            // Ignore the snapshots of cycles which were completed since.
+            checkpoint.snapshots[w] = snapshot != null && snapshot.cycle >= checkpoint.nextCycles[w] ? snapshot : null;
+        }
+        checkpoint.evaluations = telemetry.getWorkerEvaluations();
+        checkpoint.accepted = telemetry.getWorkerAcceptedMoves();
+        checkpoint.improvements = telemetry.getWorkerImprovements();
+        int size = elites == null ? 0 : elites.size();
+        checkpoint.elites = new int[size][];
+        checkpoint.eliteScores = new double[size];
+        for (int e = 0; e < size; e++) {
+            checkpoint.elites[e] = elites.key(e);
+            checkpoint.eliteScores[e] = elites.score(e);
+        }
+        checkpoint.write(checkpointFile);
+    }
+
+    private synchronized Timer timer() {
+        if (timer == null) {
+            timer = new Timer("cryptanalysis-timer", true);
+        }
+        return timer;
+    }
+
+    private void workerDone() {
+        if (activeWorkers.decrementAndGet() == 0) {
+            done.countDown();
+        }
+    }
+
+    // Stops the run by itself after timeBudgetSeconds, after maxEvaluations candidate keys were scored, or after
+    // stallCycles cycles (of all the workers together) without a new best score. 0 for no limit.
+    void limits(long timeBudgetSeconds, long maxEvaluations, long stallCycles) {
+        this.maxEvaluations = maxEvaluations;
+        this.stallCycles = stallCycles;
+        if (timeBudgetSeconds > 0) {
+            timer().schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    stop(String.format("time budget of %,d seconds", timeBudgetSeconds));
+                }
+            }, 1000 * timeBudgetSeconds);
+        }
+    }
+
+    // Runs the tasks in parallel and waits for all of them. Must be called from a task of this session, which takes
+    // part in the work (so it works with any number of threads). Returns false if the session was cancelled.
+    boolean invokeAll(Runnable[] tasks) {
+        try {
+            if (executor instanceof ForkJoinPool) {
+                ForkJoinTask<?>[] forks = new ForkJoinTask<?>[tasks.length];
+                for (int i = 0; i < tasks.length; i++) {
+                    forks[i] = ForkJoinTask.adapt(tasks[i]);
+                }
+                ForkJoinTask.invokeAll(forks);
+            } else {
+                FutureTask<?>[] futures = new FutureTask<?>[tasks.length];
+                for (int i = 1; i < tasks.length; i++) {
+                    futures[i] = new FutureTask<>(tasks[i], null);
+                    executor.execute(futures[i]);
+                }
+                tasks[0].run();
+                // Runs here the tasks which no thread has started yet (run() does nothing for a task already started),
+                // since the threads of a small pool may all be busy with other workers.
+                for (int i = 1; i < tasks.length; i++) {
+                    futures[i].run();
+                }
+                for (int i = 1; i < tasks.length; i++) {
+                    // Tasks still in the queue are dropped by shutdownNow(), so do not wait for them forever.
+                    while (!futures[i].isDone()) {
+                        if (cancelled.get()) {
+                            return false;
+                        }
+                        try {
+                            futures[i].get(100, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException ignored) {
+                        }
+                    }
+                }
+            }
+        } catch (CancellationException | RejectedExecutionException | InterruptedException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return !cancelled.get();
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public boolean isRunning() {
+        return !cancelled.get() && activeWorkers.get() > 0;
+    }
+
+    // Signals all workers to stop, and returns immediately.
+    public void cancel() {
+        cancelled.set(true);
+        executor.shutdownNow();
+        if (closed.compareAndSet(false, true)) {
+            synchronized (this) {
+                if (timer != null) {
+                    timer.cancel();
+                }
+            }
+            // The snapshots are taken between rounds, so they are consistent even if the workers are still running.
+            if (checkpointFile != null) {
+                checkpoint();
+            }
+            telemetry.close();
+            done.countDown();
+        }
+    }
+
+    private void stop(String reason) {
+        if (cancelled.compareAndSet(false, true)) {
+            stopReason = reason;
+            event("Stopped - " + reason);
+        }
+        cancel();
+    }
+
+    // Why the run stopped by itself, null if it did not (yet), or was cancelled.
+    public String stopReason() {
+        return stopReason;
+    }
+
+    // Waits until the run ends, by itself or cancelled, and returns the best key (empty if none). With no limits,
+    // only cancel() ends the run.
+    public StringBuilder awaitBestKey() throws InterruptedException {
+        done.await();
+        cancel();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return bestKey();
+    }
+
+    public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        return executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void renderer(Function<BestKey, StringBuilder> renderer) {
+        this.renderer = renderer;
+    }
+
+    // Raises the best score to score, and returns true, if score is higher than the best so far.
+    boolean improves(double score) {
+        while (true) {
+            long bits = bestOverall.get();
+            if (score <= Double.longBitsToDouble(bits)) {
+                return false;
+            }
+            if (bestOverall.compareAndSet(bits, Double.doubleToLongBits(score))) {
+                cyclesAtImprovement.set(cycles.get());
+                return true;
+            }
+        }
+    }
+
+    void publish(int[] cToP, double score, int task, int cycle, int round, int rounds, double temp) {
+        BestKey key = new BestKey(cToP, score, task, cycle, round, rounds, temp, updates.incrementAndGet());
+        best.accumulateAndGet(key, (current, candidate) -> current == null || candidate.score > current.score ? candidate : current);
+        sequence.offer(key);
+        readUpdate.set(false);
+    }
+
+    void event(String event) {
+        events.offer(event);
+    }
+
+    // Next event (the oldest ones are dropped if they are not consumed fast enough), null if none.
+    public String pollEvent() {
+        return events.poll();
+    }
+
+    public double bestScore() {
+        return Double.longBitsToDouble(bestOverall.get());
+    }
+
+    public long updates() {
+        return updates.get();
+    }
+
+    // Counts of a worker since its previous call: candidate keys scored, moves made and new best keys.
+    void evaluated(int worker, long evaluations, long accepted, long improvements) {
+        telemetry.count(worker, evaluations, accepted, improvements);
+        if (maxEvaluations > 0 && telemetry.getEvaluations() >= maxEvaluations) {
+            stop(String.format("%,d evaluations", maxEvaluations));
+        }
+    }
+
+    public long evaluations() {
+        return telemetry.getEvaluations();
+    }
+
+    public Telemetry telemetry() {
+        return telemetry;
+    }
+
+    // Best key so far (empty if none yet).
+    public StringBuilder bestKey() {
+        BestKey key = best.get();
+        return key == null ? new StringBuilder() : renderer.apply(key);
+    }
+
+    // Best key if it changed since the previous call, null otherwise.
+    public StringBuilder pollBestKey() {
+        if (readUpdate.getAndSet(true)) {
+            return null;
+        }
+        BestKey key = best.get();
+        return key == null ? null : renderer.apply(key);
+    }
+
+    // For slow updates - the sequence of the best keys, in the order they were found (the oldest ones are dropped if
+    // they are not consumed fast enough).
+    public String pollSequence() {
+        BestKey key = sequence.poll();
+        return key == null ? null : renderer.apply(key).toString();
+    }
+
+    public int sequenceSize() {
+        return sequence.size();
+    }
+
+    // Best keys dropped from the sequence because they were not consumed fast enough.
+    public long sequenceDropped() {
+        return sequence.dropped();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import java.util.Arrays;
+
+// Tabu search: each iteration evaluates all the moves of a chain (the same assignments and swaps, under the same
+// constraints, as an SA round) and makes the best one which is not tabu, even if it lowers the score. Moving a homophone
+// away from a letter makes the (homophone, letter) pair tabu for the next tenure iterations, unless moving it back
+// would give a new best score for the cycle (aspiration). A cycle starts from a random key, and ends after stall
+// iterations without a new best, or after maxIterations. The key, the tabu table and the counts are snapshot after each
+// iteration, so that a checkpointed cycle resumes at the iteration it was in.
+final class TabuSearch {
+
+    private static final int NONE = 0;
+    private static final int ASSIGN = 1;
+    private static final int SWAP = 2;
+
+    private final Chain chain;
+    private final int task;
+    private final int[] cToPwarm;
+    private final int tenure;
+    private final int stall;
+    private final int maxIterations;
+    private final int pListSize;
+    // Iteration until which assigning homophone c to letter p is tabu, at c * pListSize + p.
+    private final int[] tabuUntil;
+
+    private TabuSearch(Chain chain, int task, int[] cToPwarm, CryptanalysisParameters parameters) {
+        this.chain = chain;
+        this.task = task;
+        this.cToPwarm = cToPwarm;
+        this.tenure = parameters.tabuTenure;
+        this.stall = parameters.tabuStall;
+        this.maxIterations = parameters.tabuIterations;
+        this.pListSize = chain.homophoneCounts.length;
+        this.tabuUntil = new int[chain.cToP.length * pListSize];
+    }
+
+    // With a warm start key (cToPwarm != null), the first cycle starts from it instead of a random key.
+    static void start(SolverSession session, Chain chain, int task, int[] cToPwarm, CryptanalysisParameters parameters) {
+        TabuSearch tabu = new TabuSearch(chain, task, cToPwarm, parameters);
+        session.schedule(task, cycle -> tabu.cycle(session, cycle));
+    }
+
+    private void cycle(SolverSession session, int cycle) {
+        final int[] cToP = chain.cToP;
+        final int cListSize = cToP.length;
+
+        Checkpoint.Snapshot resumed = session.resumePoint(task, cycle);
+        chain.reseed(session.seed(task, cycle));
+        double best;
+        int sinceBest = 0;
+        int iteration = 0;
+        if (resumed != null && resumed.state != null && resumed.state.length == tabuUntil.length + 1) {
+            chain.seed(resumed.keys[0]);
+            best = resumed.cycleBest;
+            iteration = resumed.round;
+            sinceBest = resumed.state[0];
+            System.arraycopy(resumed.state, 1, tabuUntil, 0, tabuUntil.length);
+        } else {
+            if (cycle == 0 && cToPwarm != null) {
+                chain.seed(cToPwarm);
+            } else {
+                chain.randomize();
+            }
+            best = chain.score;
+            Arrays.fill(tabuUntil, 0);
+        }
+        session.improves(chain.score);
+
+        long start = System.nanoTime();
+        long evaluations = 0;
+        long reported = 0;
+        while (sinceBest < stall && iteration < maxIterations) {
+            // A generator per iteration, so that an iteration resumed from a checkpoint runs as it would have.
+            chain.reseed(session.seed(task, cycle) + iteration + 1);
+            iteration++;
+            int move = NONE;
+            int moveA = -1;
+            int moveB = -1;
+            double moveScore = -Double.MAX_VALUE;
+
+            int shift1 = chain.random.nextInt(cListSize);
+            for (int c_ = 0; c_ < cListSize; c_++) {
+                if (session.isCancelled()) {
+                    return;
+                }
+                int c = (c_ + shift1) % cListSize;
+                int previousP = cToP[c];
+                int shift2 = chain.random.nextInt(pListSize);
+                for (int p_ = 0; p_ < pListSize; p_++) {
+                    int p = (p_ + shift2) % pListSize;
+                    if (p == previousP || !chain.canAssign(c, p)) {
+                        continue;
+                    }
+                    double newScore = chain.assign(c, p);
+                    chain.assign(c, previousP);
+                    evaluations++;
+                    if (newScore > moveScore && (newScore > best || tabuUntil[c * pListSize + p] <= iteration)) {
+                        move = ASSIGN;
+                        moveA = c;
+                        moveB = p;
+                        moveScore = newScore;
+                    }
+                }
+            }
+
+            for (int c1_ = 0; c1_ < cListSize; c1_++) {
+                if (session.isCancelled()) {
+                    return;
+                }
+                int c1 = (c1_ + shift1) % cListSize;
+                for (int c2_ = c1_ + 1; c2_ < cListSize; c2_++) {
+                    int c2 = (c2_ + shift1) % cListSize;
+                    if (!chain.canSwap(c1, c2)) {
+                        continue;
+                    }
+                    double newScore = chain.scorer.swap(c1, c2);
+                    chain.scorer.swap(c1, c2);
+                    evaluations++;
+                    if (newScore > moveScore && (newScore > best
+                            || (tabuUntil[c1 * pListSize + cToP[c2]] <= iteration && tabuUntil[c2 * pListSize + cToP[c1]] <= iteration))) {
+                        move = SWAP;
+                        moveA = c1;
+                        moveB = c2;
+                        moveScore = newScore;
+                    }
+                }
+            }
+
+            if (move == NONE) {
+                break;
+            }
+            if (move == ASSIGN) {
+                tabuUntil[moveA * pListSize + cToP[moveA]] = iteration + tenure;
+                chain.score = chain.assign(moveA, moveB);
+            } else {
+                tabuUntil[moveA * pListSize + cToP[moveA]] = iteration + tenure;
+                tabuUntil[moveB * pListSize + cToP[moveB]] = iteration + tenure;
+                chain.score = chain.scorer.swap(moveA, moveB);
+            }
+
+            if (chain.score > best) {
+                best = chain.score;
+                sinceBest = 0;
+            } else {
+                sinceBest++;
+            }
+            boolean improves = session.improves(chain.score);
+            if (improves) {
+                session.publish(cToP, chain.score, task, cycle, iteration, maxIterations, 0);
+            }
+            session.evaluated(task, evaluations - reported, 1, improves ? 1 : 0);
+            reported = evaluations;
+            session.snapshot(task, cycle, iteration, cToP, best, state(sinceBest));
+        }
+
+        session.evaluated(task, evaluations - reported, 0, 0);
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        session.event(String.format("Task %d Cycle %d - tabu search: %,d iterations, %,d evaluations (%,.0f/s), best %,.0f",
+                task, cycle, iteration, evaluations, evaluations / seconds, best));
+    }
+
+    // The number of iterations since the best of the cycle, then the tabu table, for snapshots.
+    private int[] state(int sinceBest) {
+        int[] state = new int[tabuUntil.length + 1];
+        state[0] = sinceBest;
+        System.arraycopy(tabuUntil, 0, state, 1, tabuUntil.length);
+        return state;
+    }
+}
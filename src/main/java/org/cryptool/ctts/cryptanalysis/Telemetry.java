@@ -0,0 +1,227 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+import org.cryptool.ctts.util.FileUtils;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters of a session, per worker (task, or temperature level for parallel tempering): candidate keys scored,
+// moves accepted and new best keys, plus the time spent rendering the best keys (updateForced() and keySb()).
+// Workers add their counts once per round (or sweep, or tabu iteration), so the counters cost nothing in the move loops.
+public final class Telemetry implements TelemetryMXBean {
+
+    private volatile long start = System.nanoTime();
+    // Set when the session ends, so that the rates do not decay afterwards.
+    private volatile long end = 0;
+    private final AtomicLongArray evaluations;
+    private final AtomicLongArray accepted;
+    private final AtomicLongArray improvements;
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder updateForcedNanos = new LongAdder();
+    private final LongAdder keySbNanos = new LongAdder();
+    private ObjectName name = null;
+
+    Telemetry(int workers) {
+        evaluations = new AtomicLongArray(workers);
+        accepted = new AtomicLongArray(workers);
+        improvements = new AtomicLongArray(workers);
+    }
+
+    void count(int worker, long evaluations, long accepted, long improvements) {
+        this.evaluations.addAndGet(worker, evaluations);
+        this.accepted.addAndGet(worker, accepted);
+        this.improvements.addAndGet(worker, improvements);
+    }
+
+    // Continues the counters of a resumed session.
+    void restore(double elapsedSeconds, long[] evaluations, long[] accepted, long[] improvements) {
+        start = System.nanoTime() - (long) (elapsedSeconds * 1e9);
+        for (int w = 0; w < Math.min(this.evaluations.length(), evaluations.length); w++) {
+            count(w, evaluations[w], accepted[w], improvements[w]);
+        }
+    }
+
+    void rendered(long updateForcedNanos, long keySbNanos) {
+        renders.increment();
+        this.updateForcedNanos.add(updateForcedNanos);
+        this.keySbNanos.add(keySbNanos);
+    }
+
+    synchronized void register(int session) {
+        try {
+            name = new ObjectName("org.cryptool.ctts:type=Cryptanalysis,session=" + session);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException e) {
+            System.out.printf("Telemetry not available over JMX: %s\n", e);
+            name = null;
+        }
+    }
+
+    // Stops the clock, and unregisters from JMX.
+    synchronized void close() {
+        if (end == 0) {
+            end = System.nanoTime();
+        }
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ignored) {
+        }
+        name = null;
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        return ((end == 0 ? System.nanoTime() : end) - start) / 1e9;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return sum(evaluations);
+    }
+
+    @Override
+    public double getEvaluationsPerSecond() {
+        return getEvaluations() / Math.max(1e-3, getElapsedSeconds());
+    }
+
+    @Override
+    public long getAcceptedMoves() {
+        return sum(accepted);
+    }
+
+    @Override
+    public long getImprovements() {
+        return sum(improvements);
+    }
+
+    @Override
+    public long[] getWorkerEvaluations() {
+        return values(evaluations);
+    }
+
+    @Override
+    public long[] getWorkerAcceptedMoves() {
+        return values(accepted);
+    }
+
+    @Override
+    public long[] getWorkerImprovements() {
+        return values(improvements);
+    }
+
+    @Override
+    public long getRenders() {
+        return renders.sum();
+    }
+
+    @Override
+    public double getUpdateForcedMillis() {
+        return updateForcedNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getKeySbMillis() {
+        return keySbNanos.sum() / 1e6;
+    }
+
+    // One line, for status displays.
+    public String summary() {
+        long evaluations = getEvaluations();
+        return String.format("%,.0f evaluations/s, %.1f%% accepted, %,d improvements, rendering %,.0f ms",
+                getEvaluationsPerSecond(), 100.0 * getAcceptedMoves() / Math.max(1, evaluations), getImprovements(),
+                getUpdateForcedMillis() + getKeySbMillis());
+    }
+
+    @Override
+    public String getJson() {
+        double seconds = Math.max(1e-3, getElapsedSeconds());
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "{\n  \"elapsedSeconds\": %.3f,\n  \"evaluations\": %d,\n" +
+                        "  \"evaluationsPerSecond\": %.1f,\n  \"acceptedMoves\": %d,\n  \"improvements\": %d,\n" +
+                        "  \"renders\": %d,\n  \"updateForcedMillis\": %.3f,\n  \"keySbMillis\": %.3f,\n  \"workers\": [",
+                seconds, getEvaluations(), getEvaluations() / seconds, getAcceptedMoves(), getImprovements(),
+                getRenders(), getUpdateForcedMillis(), getKeySbMillis()));
+        for (int w = 0; w < evaluations.length(); w++) {
+            sb.append(w == 0 ? "\n" : ",\n");
+            sb.append(String.format(Locale.ROOT, "    {\"worker\": %d, \"evaluations\": %d, \"evaluationsPerSecond\": %.1f, " +
+                            "\"acceptedMoves\": %d, \"improvements\": %d}",
+                    w, evaluations.get(w), evaluations.get(w) / seconds, accepted.get(w), improvements.get(w)));
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    // One row per worker, then the totals.
+    public String csv() {
+        double seconds = Math.max(1e-3, getElapsedSeconds());
+        StringBuilder sb = new StringBuilder("worker,evaluations,evaluations_per_second,accepted_moves,improvements\n");
+        for (int w = 0; w < evaluations.length(); w++) {
+            sb.append(String.format(Locale.ROOT, "%d,%d,%.1f,%d,%d\n",
+                    w, evaluations.get(w), evaluations.get(w) / seconds, accepted.get(w), improvements.get(w)));
+        }
+        sb.append(String.format(Locale.ROOT, "all,%d,%.1f,%d,%d\n",
+                getEvaluations(), getEvaluations() / seconds, getAcceptedMoves(), getImprovements()));
+        return sb.toString();
+    }
+
+    // Writes <name>.json and <name>.csv to the working directory.
+    public void export(String name) {
+        write(name + ".json", getJson());
+        write(name + ".csv", csv());
+    }
+
+    private static void write(String filename, String text) {
+        File file = FileUtils.fileToWrite(null, filename, false);
+        if (file == null) {
+            return;
+        }
+        try (FileWriter fileWriter = new FileWriter(file)) {
+            fileWriter.write(text);
+            System.out.printf("Saved %s\n", file);
+        } catch (IOException e) {
+            System.out.printf("Failed save %s\n", file);
+        }
+    }
+
+    private static long sum(AtomicLongArray counts) {
+        long sum = 0;
+        for (int w = 0; w < counts.length(); w++) {
+            sum += counts.get(w);
+        }
+        return sum;
+    }
+
+    private static long[] values(AtomicLongArray counts) {
+        long[] values = new long[counts.length()];
+        for (int w = 0; w < values.length; w++) {
+            values[w] = counts.get(w);
+        }
+        return values;
+    }
+}
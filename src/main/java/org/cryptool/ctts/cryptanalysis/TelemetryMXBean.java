@@ -0,0 +1,45 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.cryptanalysis;
+
+// The telemetry of a running session, over JMX (e.g. with jconsole), as org.cryptool.ctts:type=Cryptanalysis,session=<n>.
+public interface TelemetryMXBean {
+
+    double getElapsedSeconds();
+
+    long getEvaluations();
+
+    double getEvaluationsPerSecond();
+
+    long getAcceptedMoves();
+
+    long getImprovements();
+
+    long[] getWorkerEvaluations();
+
+    long[] getWorkerAcceptedMoves();
+
+    long[] getWorkerImprovements();
+
+    long getRenders();
+
+    double getUpdateForcedMillis();
+
+    double getKeySbMillis();
+
+    String getJson();
+}
@@ -0,0 +1,53 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+// Pruned higher-order model with "stupid backoff" (Brants et al.) to a lower-order model: an n-gram not in the
+// pruned table gets weight * the value of its last lower.n symbols. Without it, almost all 7- and 8-grams of a
+// random key are unseen, so the score is flat (0) and SA has nothing to climb until most of the key is right.
+public final class BackoffNgramModel extends NgramModel {
+
+    final NgramModel higher;
+    final NgramModel lower;
+    final double weight;
+    // dim^lower.n - the code of the suffix is code % suffixRange.
+    private final long suffixRange;
+
+    public BackoffNgramModel(NgramModel higher, NgramModel lower, double weight) {
+        super(higher.n, higher.dim);
+        if (lower.dim != higher.dim || lower.n >= higher.n) {
+            throw new RuntimeException("Invalid backoff from " + higher.n + "-grams to " + lower.n + "-grams");
+        }
+        this.higher = higher;
+        this.lower = lower;
+        this.weight = weight;
+        this.suffixRange = (long) Math.pow(dim, lower.n);
+        this.alphabet = higher.alphabet;
+        this.counts = higher.counts;
+    }
+
+    @Override
+    public double value(long code) {
+        double value = higher.value(code);
+        return value != 0 ? value : weight * lower.value(code % suffixRange);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return higher.memoryBytes() + lower.memoryBytes();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+import java.util.Arrays;
+
+// The ciphertext compiled for full scoring: its distinct n-grams of homophones (windows with a -1 are left out) with
+// their multiplicities, and the homophone counts. A full score then costs one model lookup per distinct n-gram
+// instead of one per position, and gives the same result as Ngrams4/5/6.score() (up to rounding), including for
+// homophones which are not assigned (cToP[c] == -1).
+public final class CipherNgrams {
+
+    private final int n;
+    private final int[] cArray;
+    // If most n-grams are distinct, a rolling scan of cArray is faster (one cToP lookup per position, instead of n
+    // per distinct n-gram).
+    private final boolean compressed;
+    // Homophones of the distinct n-grams, n per n-gram.
+    private final int[] tuples;
+    private final int[] multiplicities;
+    private final int[] cCounts;
+
+    public CipherNgrams(int n, int[] cArray, int cListSize) {
+        this.n = n;
+        this.cArray = cArray;
+        cCounts = new int[cListSize];
+        for (int c : cArray) {
+            if (c != -1) {
+                cCounts[c]++;
+            }
+        }
+
+        // Sort the windows by content, so identical n-grams are adjacent.
+        int windows = 0;
+        Integer[] starts = new Integer[Math.max(0, cArray.length - n + 1)];
+        int valid = 0;
+        for (int i = 0; i < cArray.length; i++) {
+            valid = cArray[i] == -1 ? 0 : valid + 1;
+            if (valid >= n) {
+                starts[windows++] = i - n + 1;
+            }
+        }
+        Arrays.sort(starts, 0, windows, (s1, s2) -> compare(cArray, s1, s2));
+
+        int[] tuples = new int[windows * n];
+        int[] multiplicities = new int[windows];
+        int distinct = 0;
+        for (int w = 0; w < windows; w++) {
+            if (distinct > 0 && compare(cArray, starts[w], starts[w - 1]) == 0) {
+                multiplicities[distinct - 1]++;
+                continue;
+            }
+            System.arraycopy(cArray, starts[w], tuples, distinct * n, n);
+            multiplicities[distinct++] = 1;
+        }
+        this.tuples = Arrays.copyOf(tuples, distinct * n);
+        this.multiplicities = Arrays.copyOf(multiplicities, distinct);
+        this.compressed = (long) distinct * n < windows;
+    }
+
+    private int compare(int[] cArray, int s1, int s2) {
+        for (int i = 0; i < n; i++) {
+            int diff = cArray[s1 + i] - cArray[s2 + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    public int distinct() {
+        return multiplicities.length;
+    }
+
+    public double score(NgramModel model, int[] cToP) {
+        final int dim = model.dim;
+        int[] total = new int[1];
+        double ngramSum = ngramSum(Scorer.of(model), cToP, total);
+
+        long[] pCounts = new long[dim];
+        long totalMonograms = 0;
+        for (int c = 0; c < cCounts.length; c++) {
+            int p = cToP[c];
+            if (p != -1) {
+                pCounts[p] += cCounts[c];
+                totalMonograms += cCounts[c];
+            }
+        }
+        if (total[0] == 0 || totalMonograms == 0) {
+            return 0;
+        }
+        long sumOfSquares = 0;
+        for (long count : pCounts) {
+            sumOfSquares += count * count;
+        }
+        double ic = dim * (double) sumOfSquares / ((double) totalMonograms * totalMonograms);
+        return 1000.0 * (ngramSum / total[0]) / ic;
+    }
+
+    // Sum of the values of all the n-grams without an unassigned homophone, and their number (in total[0]).
+    double ngramSum(Scorer scorer, int[] cToP, int[] total) {
+        if (!compressed) {
+            return scan(scorer.model(), cToP, total);
+        }
+        double ngramSum = 0;
+        int count = 0;
+        // The tuples are stored back to back, so tuple t is the window of tuples ending at (t + 1) * n - 1.
+        for (int t = 0, end = n - 1; t < multiplicities.length; t++, end += n) {
+            double val = scorer.window(tuples, cToP, end);
+            if (val >= 0) {
+                ngramSum += multiplicities[t] * val;
+                count += multiplicities[t];
+            }
+        }
+        total[0] = count;
+        return ngramSum;
+    }
+
+    private double scan(NgramModel model, int[] cToP, int[] total) {
+        final int dim = model.dim;
+        final long top = (long) Math.pow(dim, n - 1);
+        double ngramSum = 0;
+        int count = 0;
+        long code = 0;
+        int valid = 0;
+        for (int i = 0; i < cArray.length; i++) {
+            int c = cArray[i];
+            int p = c == -1 ? -1 : cToP[c];
+            if (p == -1) {
+                valid = 0;
+                code = 0;
+                continue;
+            }
+            if (valid == n) {
+                code -= cToP[cArray[i - n]] * top;
+                valid--;
+            }
+            code = code * dim + p;
+            if (++valid == n) {
+                ngramSum += model.value(code);
+                count++;
+            }
+        }
+        total[0] = count;
+        return ngramSum;
+    }
+}
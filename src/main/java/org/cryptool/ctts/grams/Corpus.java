@@ -0,0 +1,97 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Normalized reference text, as one byte per letter (its index in the sorted alphabet), with SPACE for word
+// separators (only kept if spaces are not removed). About 1 byte per letter, instead of a Token with two Strings.
+public final class Corpus {
+
+    public static final byte SPACE = -1;
+    private static final int MAX_ALPHABET = 127;
+
+    private final byte[] symbols;
+    private final String[] alphabet;
+    private final int[] counts;
+
+    private Corpus(byte[] symbols, String[] alphabet, int[] counts) {
+        this.symbols = symbols;
+        this.alphabet = alphabet;
+        this.counts = counts;
+    }
+
+    // text contains only letters and ' '.
+    public static Corpus of(CharSequence text) {
+        boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+        for (int i = 0; i < text.length(); i++) {
+            seen[text.charAt(i)] = true;
+        }
+        seen[' '] = false;
+        int[] index = new int[Character.MAX_VALUE + 1];
+        String[] alphabet = new String[MAX_ALPHABET];
+        int dim = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (seen[c]) {
+                if (dim == MAX_ALPHABET) {
+                    throw new RuntimeException("Too many letters in reference text - max allowed " + MAX_ALPHABET);
+                }
+                index[c] = dim;
+                alphabet[dim++] = String.valueOf((char) c);
+            }
+        }
+        byte[] symbols = new byte[text.length()];
+        int[] counts = new int[dim];
+        for (int i = 0; i < symbols.length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                symbols[i] = SPACE;
+            } else {
+                symbols[i] = (byte) index[c];
+                counts[index[c]]++;
+            }
+        }
+        return new Corpus(symbols, Arrays.copyOf(alphabet, dim), counts);
+    }
+
+    public int length() {
+        return symbols.length;
+    }
+
+    // Index of the letter at position i in the alphabet, or SPACE.
+    public int symbol(int i) {
+        return symbols[i];
+    }
+
+    public char charAt(int i) {
+        int p = symbols[i];
+        return p == SPACE ? ' ' : alphabet[p].charAt(0);
+    }
+
+    public int dim() {
+        return alphabet.length;
+    }
+
+    public List<String> alphabet() {
+        return Arrays.asList(alphabet);
+    }
+
+    public int[] counts() {
+        return counts.clone();
+    }
+}
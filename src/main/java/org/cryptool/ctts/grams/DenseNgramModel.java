@@ -0,0 +1,38 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+// Wraps the dim^n tables built by Ngrams4/5/6.stats().
+public final class DenseNgramModel extends NgramModel {
+
+    final double[] stats;
+
+    DenseNgramModel(int n, int dim, double[] stats) {
+        super(n, dim);
+        this.stats = stats;
+    }
+
+    @Override
+    public double value(long code) {
+        return stats[(int) code];
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 8L * stats.length;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+import java.util.Arrays;
+
+// Same score as Ngrams4/5/6.score(), but maintained incrementally: assign() and swap() only re-evaluate the n-gram
+// windows which touch an occurrence of the modified homophone(s), and update the IC term in O(1).
+// Full rescoring (reset() and resync) only evaluates the distinct n-grams of the ciphertext, see CipherNgrams.
+// The n-gram sum is a running double, so the result may differ from a full score() in the last bits. The relative
+// difference stays below EPSILON, since the running sums are recomputed from scratch every RESYNC_INTERVAL updates.
+public class IncrementalScorer {
+
+    public static final double EPSILON = 1e-9;
+    private static final int RESYNC_INTERVAL = 1 << 16;
+    private static final int[] NONE = new int[0];
+
+    private final int n;
+    private final int dim;
+    private final Scorer scorer;
+    private final int[] cArray;
+    // For each homophone, the (sorted) positions where it appears in cArray.
+    private final int[][] occurrences;
+    // Buffer for the end positions of the windows affected by an update.
+    private final int[] windowEnds;
+    private final int[] pCounts;
+    private final CipherNgrams cipherNgrams;
+    private final int[] resyncTotal = new int[1];
+
+    private int[] cToP;
+    private double ngramSum;
+    private int total;
+    private int totalMonograms;
+    private long sumOfSquares;
+    private int updates;
+
+    public IncrementalScorer(NgramModel model, int[] cArray, int cListSize) {
+        this.n = model.n;
+        this.dim = model.dim;
+        this.scorer = Scorer.of(model);
+        this.cArray = cArray;
+        this.windowEnds = new int[cArray.length];
+        this.pCounts = new int[dim];
+
+        int[] counts = new int[cListSize];
+        for (int c : cArray) {
+            if (c != -1) {
+                counts[c]++;
+            }
+        }
+        cipherNgrams = new CipherNgrams(n, cArray, cListSize);
+        occurrences = new int[cListSize][];
+        for (int c = 0; c < cListSize; c++) {
+            occurrences[c] = new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int i = 0; i < cArray.length; i++) {
+            int c = cArray[i];
+            if (c != -1) {
+                occurrences[c][counts[c]++] = i;
+            }
+        }
+    }
+
+    // New scorer for the same ciphertext and model, sharing the (read-only) occurrence index and n-grams with prototype.
+    public IncrementalScorer(IncrementalScorer prototype) {
+        this.n = prototype.n;
+        this.dim = prototype.dim;
+        this.scorer = prototype.scorer;
+        this.cArray = prototype.cArray;
+        this.occurrences = prototype.occurrences;
+        this.cipherNgrams = prototype.cipherNgrams;
+        this.windowEnds = new int[cArray.length];
+        this.pCounts = new int[dim];
+    }
+
+    // Attaches the key (which is then updated in place by assign()) and computes the full score.
+    public double reset(int[] cToP) {
+        this.cToP = cToP;
+        resync();
+        return score();
+    }
+
+    public double score() {
+        if (total == 0 || totalMonograms == 0) {
+            return 0;
+        }
+        double ic = dim * (double) sumOfSquares / ((double) totalMonograms * totalMonograms);
+        return 1000.0 * (ngramSum / total) / ic;
+    }
+
+    // Assigns p to homophone c, and returns the new score.
+    public double assign(int c, int p) {
+        int previousP = cToP[c];
+        if (previousP == p) {
+            return score();
+        }
+        int windows = collectWindows(occurrences[c], NONE);
+        removeWindows(windows);
+
+        int count = occurrences[c].length;
+        monograms(previousP, -count);
+        cToP[c] = p;
+        monograms(p, count);
+
+        addWindows(windows);
+        return updated();
+    }
+
+    // Swaps the assignments of homophones c1 and c2, and returns the new score.
+    // Windows which contain both c1 and c2 are evaluated only once.
+    public double swap(int c1, int c2) {
+        int p1 = cToP[c1];
+        int p2 = cToP[c2];
+        if (p1 == p2) {
+            return score();
+        }
+        int windows = collectWindows(occurrences[c1], occurrences[c2]);
+        removeWindows(windows);
+
+        int count1 = occurrences[c1].length;
+        int count2 = occurrences[c2].length;
+        monograms(p1, count2 - count1);
+        monograms(p2, count1 - count2);
+        cToP[c1] = p2;
+        cToP[c2] = p1;
+
+        addWindows(windows);
+        return updated();
+    }
+
+    public int n() {
+        return n;
+    }
+
+    public int p(int c) {
+        return cToP[c];
+    }
+
+    private double updated() {
+        if (++updates >= RESYNC_INTERVAL) {
+            resync();
+        }
+        return score();
+    }
+
+    private void resync() {
+        Arrays.fill(pCounts, 0);
+        totalMonograms = 0;
+        sumOfSquares = 0;
+        for (int c = 0; c < occurrences.length; c++) {
+            monograms(cToP[c], occurrences[c].length);
+        }
+        ngramSum = cipherNgrams.ngramSum(scorer, cToP, resyncTotal);
+        total = resyncTotal[0];
+        updates = 0;
+    }
+
+    private void monograms(int p, int delta) {
+        if (p == -1) {
+            return;
+        }
+        long count = pCounts[p];
+        sumOfSquares += (count + delta) * (count + delta) - count * count;
+        pCounts[p] += delta;
+        totalMonograms += delta;
+    }
+
+    // Collects (without duplicates) the end positions of all windows containing one of the positions in
+    // positions1 or positions2. Both are sorted, so they are merged on the fly.
+    private int collectWindows(int[] positions1, int[] positions2) {
+        int windows = 0;
+        int last = n - 2;
+        int lastEnd = cArray.length - 1;
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < positions1.length || i2 < positions2.length) {
+            int position;
+            if (i2 == positions2.length || (i1 < positions1.length && positions1[i1] < positions2[i2])) {
+                position = positions1[i1++];
+            } else {
+                position = positions2[i2++];
+            }
+            int to = Math.min(position + n - 1, lastEnd);
+            for (int end = Math.max(position, last + 1); end <= to; end++) {
+                windowEnds[windows++] = end;
+            }
+            last = Math.max(last, to);
+        }
+        return windows;
+    }
+
+    private void removeWindows(int windows) {
+        for (int w = 0; w < windows; w++) {
+            double val = scorer.window(cArray, cToP, windowEnds[w]);
+            if (val >= 0) {
+                ngramSum -= val;
+                total--;
+            }
+        }
+    }
+
+    private void addWindows(int windows) {
+        for (int w = 0; w < windows; w++) {
+            double val = scorer.window(cArray, cToP, windowEnds[w]);
+            if (val >= 0) {
+                ngramSum += val;
+                total++;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+// Linear interpolation of a model with a lower-order one: (1 - weight) * the n-gram value + weight * the value of
+// its last lower.n symbols. Smooths the higher-order score, at the cost of a second lookup per n-gram.
+public final class InterpolatedNgramModel extends NgramModel {
+
+    final NgramModel higher;
+    final NgramModel lower;
+    final double weight;
+    // dim^lower.n - the code of the suffix is code % suffixRange.
+    private final long suffixRange;
+
+    public InterpolatedNgramModel(NgramModel higher, NgramModel lower, double weight) {
+        super(higher.n, higher.dim);
+        if (lower.dim != higher.dim || lower.n >= higher.n) {
+            throw new RuntimeException("Invalid interpolation of " + higher.n + "-grams with " + lower.n + "-grams");
+        }
+        this.higher = higher;
+        this.lower = lower;
+        this.weight = weight;
+        this.suffixRange = (long) Math.pow(dim, lower.n);
+        this.alphabet = higher.alphabet;
+        this.counts = higher.counts;
+    }
+
+    @Override
+    public double value(long code) {
+        return (1 - weight) * higher.value(code) + weight * lower.value(code % suffixRange);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return higher.memoryBytes() + lower.memoryBytes();
+    }
+}
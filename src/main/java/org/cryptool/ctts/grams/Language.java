@@ -16,8 +16,10 @@
 
 package org.cryptool.ctts.grams;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.zip.CRC32;
 
 public enum Language {
 
@@ -38,10 +40,9 @@ public enum Language {
             System.out.println("Could not open resource file: " + filename);
             System.exit(0);
         }
-        byte[] b = new byte[10_000_000];
         try {
-            int read = is.read(b);
-            String s = new String(b);
+            // A single read() may return only part of a resource inside a jar.
+            String s = new String(is.readAllBytes());
 
             final String RAW_PLAINTEXT_LETTERS = "abcdefghijklmnopqrstuvwxyzàáãåάąäâªªçčðďλěêèéęëįîìíïłňńñöøòóôőõθº°ǫφþřŕš§ťüúűùûů×ýżžź";
             final String PLAINTEXT_LETTERS_MAP = "abcdefghijklmnopqrstuvwxyzaaaaaaaaaaccdddeeeeeeiiiiilnnnooooooooooopprrsstuuuuuuxyzzz";
@@ -79,4 +80,20 @@ public enum Language {
 
     }
 
+    // CRC32 of the raw reference text, to tell whether models built from it are still valid, without normalizing it.
+    // 0 if it cannot be read.
+    public static long crc(Language l) {
+        final String filename = l.toString().toLowerCase(Locale.ROOT) + ".txt";
+        try (InputStream is = Language.class.getClassLoader().getResourceAsStream(filename)) {
+            if (is == null) {
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(is.readAllBytes());
+            return crc.getValue();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
 }
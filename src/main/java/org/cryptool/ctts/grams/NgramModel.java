@@ -0,0 +1,82 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Log-count table of n-grams over an alphabet of dim symbols. An n-gram p1..pn is identified by its code
+// ((p1 * dim + p2) * dim + ...) * dim + pn, i.e. the same value as the index used by Ngrams4/5/6.
+public abstract class NgramModel {
+
+    // Dense tables above this size are replaced by sparse ones (1 << 24 doubles = 128 MB).
+    static final long MAX_DENSE_ENTRIES = 1 << 24;
+
+    final int n;
+    final int dim;
+    // Plaintext symbols (by index) and their counts in the reference text.
+    String[] alphabet = new String[0];
+    int[] counts = new int[0];
+
+    NgramModel(int n, int dim) {
+        this.n = n;
+        this.dim = dim;
+    }
+
+    public static NgramModel of(int n, int dim, double[] stats, boolean quantized) {
+        if (quantized) {
+            return QuantizedNgramModel.quantize(n, dim, stats);
+        }
+        return new DenseNgramModel(n, dim, stats);
+    }
+
+    public static boolean fitsDense(int n, int dim) {
+        return Math.pow(dim, n) <= MAX_DENSE_ENTRIES;
+    }
+
+    public int n() {
+        return n;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public NgramModel withAlphabet(List<String> alphabet, int[] counts) {
+        if (alphabet.size() != dim || counts.length != dim) {
+            throw new RuntimeException("Alphabet size mismatch: " + alphabet.size() + " vs " + dim);
+        }
+        this.alphabet = alphabet.toArray(new String[0]);
+        this.counts = counts.clone();
+        return this;
+    }
+
+    public List<String> alphabet() {
+        return Arrays.asList(alphabet);
+    }
+
+    public int[] counts() {
+        return counts.clone();
+    }
+
+    // Value (10000 * log(1 + count)) of the n-gram with the given code, 0 if never seen.
+    public abstract double value(long code);
+
+    // Heap memory used by the table (memory-mapped tables use none).
+    public abstract long memoryBytes();
+
+}
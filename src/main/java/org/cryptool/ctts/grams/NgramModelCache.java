@@ -0,0 +1,313 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Compiled n-gram models, stored as binary files (one per key, i.e. language, n and normalization flags) in
+// ~/.ctts/cache, or in the directory given by the ctts.cache system property. The files are memory-mapped read-only,
+// so loading is almost instant and several JVMs share the same pages. A file is rebuilt if it was built from another
+// reference text (CRC32 of the raw text, and normalization flags), or by another BUILD of the code building the tables.
+public class NgramModelCache {
+
+    private static final int MAGIC = 0x43544E47; // CTNG
+    private static final int VERSION = 2;
+    // To be incremented whenever the way the tables are built changes (the file format is VERSION).
+    private static final int BUILD = 1;
+    private static final int DENSE = 1;
+    private static final int QUANTIZED = 2;
+    private static final int SPARSE = 3;
+
+    private static final Map<String, NgramModel> loaded = new ConcurrentHashMap<>();
+
+    public static File directory() {
+        String dir = System.getProperty("ctts.cache");
+        if (dir == null) {
+            dir = System.getProperty("user.home") + File.separator + ".ctts" + File.separator + "cache";
+        }
+        return new File(dir);
+    }
+
+    // Returns the cached model, or builds, stores and maps it if not found or built from another reference text
+    // (source identifies it, cheaply). If the cache directory is not writable, the model built in memory is returned.
+    public static NgramModel get(String key, long source, Supplier<NgramModel> builder) {
+        return loaded.computeIfAbsent(key + "@" + source, k -> {
+            File file = file(key);
+            if (file.exists()) {
+                try {
+                    return map(file, source);
+                } catch (IOException | RuntimeException e) {
+                    System.out.printf("Invalid n-gram cache file %s (%s) - rebuilding\n", file, e.getMessage());
+                }
+            }
+            NgramModel model = builder.get();
+            try {
+                store(model, source, file);
+                return map(file, source);
+            } catch (IOException | RuntimeException e) {
+                System.out.printf("Could not cache n-gram model in %s (%s)\n", file, e.getMessage());
+                return model;
+            }
+        });
+    }
+
+    private static File file(String key) {
+        return new File(directory(), key.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9.-]", "_") + ".ngrams");
+    }
+
+    private static void store(NgramModel model, long source, File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            write(model, source, temp);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static void write(NgramModel model, long source, File temp) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer out = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION).putInt(BUILD).putLong(source);
+            out.putInt(kind(model)).putInt(model.n).putInt(model.dim);
+            for (int p = 0; p < model.dim; p++) {
+                String s = model.alphabet[p];
+                out.putInt(s.length());
+                for (char c : s.toCharArray()) {
+                    out.putChar(c);
+                }
+                out.putInt(model.counts[p]);
+            }
+            while (out.position() % 8 != 0) {
+                out.put((byte) 0);
+            }
+
+            if (model instanceof DenseNgramModel) {
+                double[] stats = ((DenseNgramModel) model).stats;
+                out.putLong(stats.length).putLong(0);
+                for (double val : stats) {
+                    out = flushIfFull(channel, out, 8).putDouble(val);
+                }
+            } else if (model instanceof QuantizedNgramModel) {
+                QuantizedNgramModel quantized = (QuantizedNgramModel) model;
+                out.putLong(quantized.stats.length).putLong(Double.doubleToLongBits(quantized.step));
+                for (char val : quantized.stats) {
+                    out = flushIfFull(channel, out, 2).putChar(val);
+                }
+            } else if (model instanceof SparseNgramModel) {
+                SparseNgramModel sparse = (SparseNgramModel) model;
+                out.putLong(sparse.keys.length).putLong(sparse.size);
+                for (long key : sparse.keys) {
+                    out = flushIfFull(channel, out, 8).putLong(key);
+                }
+                for (double val : sparse.values) {
+                    out = flushIfFull(channel, out, 8).putDouble(val);
+                }
+            } else {
+                throw new IOException("Unsupported model " + model.getClass().getSimpleName());
+            }
+            flushIfFull(channel, out, out.capacity());
+        }
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer out, int needed) throws IOException {
+        if (out.remaining() < needed) {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+        return out;
+    }
+
+    private static NgramModel map(File file, long source) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1 << 16))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("bad header");
+            }
+            if (header.getInt() != BUILD || header.getLong() != source) {
+                throw new IOException("built from another corpus or by other code");
+            }
+            int kind = header.getInt();
+            int n = header.getInt();
+            int dim = header.getInt();
+            String[] alphabet = new String[dim];
+            int[] counts = new int[dim];
+            for (int p = 0; p < dim; p++) {
+                char[] chars = new char[header.getInt()];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = header.getChar();
+                }
+                alphabet[p] = new String(chars);
+                counts[p] = header.getInt();
+            }
+            long position = align(header.position());
+            LongBuffer sizes = longs(channel, position, 2);
+            position += 16;
+
+            NgramModel model;
+            switch (kind) {
+                case DENSE: {
+                    int entries = (int) sizes.get(0);
+                    model = new MappedDense(n, dim, doubles(channel, position, entries));
+                    break;
+                }
+                case QUANTIZED: {
+                    int entries = (int) sizes.get(0);
+                    CharBuffer stats = channel.map(FileChannel.MapMode.READ_ONLY, position, 2L * entries)
+                            .order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+                    model = new MappedQuantized(n, dim, stats, Double.longBitsToDouble(sizes.get(1)));
+                    break;
+                }
+                case SPARSE: {
+                    int capacity = (int) sizes.get(0);
+                    LongBuffer keys = longs(channel, position, capacity);
+                    DoubleBuffer values = doubles(channel, position + 8L * capacity, capacity);
+                    model = new MappedSparse(n, dim, keys, values, capacity - 1, (int) sizes.get(1));
+                    break;
+                }
+                default:
+                    throw new IOException("unknown kind " + kind);
+            }
+            model.alphabet = alphabet;
+            model.counts = counts;
+            return model;
+        }
+    }
+
+    private static int kind(NgramModel model) {
+        if (model instanceof DenseNgramModel) {
+            return DENSE;
+        }
+        if (model instanceof QuantizedNgramModel) {
+            return QUANTIZED;
+        }
+        return SPARSE;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static LongBuffer longs(FileChannel channel, long position, int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * count).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    private static DoubleBuffer doubles(FileChannel channel, long position, int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * count).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    static final class MappedDense extends NgramModel {
+        private final DoubleBuffer stats;
+
+        MappedDense(int n, int dim, DoubleBuffer stats) {
+            super(n, dim);
+            this.stats = stats;
+        }
+
+        @Override
+        public double value(long code) {
+            return stats.get((int) code);
+        }
+
+        @Override
+        public long memoryBytes() {
+            return 0;
+        }
+    }
+
+    static final class MappedQuantized extends NgramModel {
+        private final CharBuffer stats;
+        private final double step;
+
+        MappedQuantized(int n, int dim, CharBuffer stats, double step) {
+            super(n, dim);
+            this.stats = stats;
+            this.step = step;
+        }
+
+        @Override
+        public double value(long code) {
+            return stats.get((int) code) * step;
+        }
+
+        @Override
+        public long memoryBytes() {
+            return 0;
+        }
+    }
+
+    static final class MappedSparse extends NgramModel {
+        private final LongBuffer keys;
+        private final DoubleBuffer values;
+        private final int mask;
+        private final int size;
+
+        MappedSparse(int n, int dim, LongBuffer keys, DoubleBuffer values, int mask, int size) {
+            super(n, dim);
+            this.keys = keys;
+            this.values = values;
+            this.mask = mask;
+            this.size = size;
+        }
+
+        @Override
+        public double value(long code) {
+            int slot = SparseNgramModel.slot(code, mask);
+            while (true) {
+                long key = keys.get(slot);
+                if (key == code) {
+                    return values.get(slot);
+                }
+                if (key == SparseNgramModel.EMPTY) {
+                    return 0;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        @Override
+        public long memoryBytes() {
+            return 0;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package org.cryptool.ctts.grams;
 
-import org.cryptool.ctts.util.Token;
-
-import java.util.ArrayList;
 import java.util.Arrays;
 
 public class Ngrams3 {
@@ -10,22 +7,18 @@ public class Ngrams3 {
         return ((p1 * dim + p2) * dim + p3);
     }
 
-    static double[] stats(ArrayList<Token> tokens, int dim, boolean removeSpaces) {
+    public static double[] stats(Corpus corpus) {
+        int dim = corpus.dim();
         long space = (long) Math.pow(dim, 3);
         if (space > Integer.MAX_VALUE) {
             throw new RuntimeException("Too many types " + dim + " - max allowed " + (int) (Math.exp(Math.log(Integer.MAX_VALUE) / 3.)));
         }
+
         double[] stats = new double[(int) space];
         int p1 = -1;
         int p2 = -1;
-        for (Token token : tokens) {
-            if (removeSpaces && token.type == Token.Type.OTHER) {
-                continue;
-            }
-            if (token.type == Token.Type.NEW_LINE) {
-                continue;
-            }
-            int p3 = token.cIndex;
+        for (int i = 0; i < corpus.length(); i++) {
+            int p3 = corpus.symbol(i);
             if (p1 != -1 && p2 != -1 && p3 != -1) {
                 stats[index(p1, p2, p3, dim)]++;
             }
@@ -42,7 +35,6 @@ public class Ngrams3 {
                     }
                     stats[index] = 10_000.0 * Math.log(1 + val);
                 }
-
             }
         }
 
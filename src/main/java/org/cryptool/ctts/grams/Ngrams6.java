@@ -16,9 +16,6 @@
 
 package org.cryptool.ctts.grams;
 
-import org.cryptool.ctts.util.Token;
-
-import java.util.ArrayList;
 import java.util.Arrays;
 
 public class Ngrams6 {
@@ -27,7 +24,8 @@ public class Ngrams6 {
         return (((((p1 * dim + p2) * dim + p3) * dim + p4)) * dim + p5) * dim + p6;
     }
 
-    public static double[] stats(ArrayList<Token> tokens, int dim, boolean removeSpaces) {
+    public static double[] stats(Corpus corpus) {
+        int dim = corpus.dim();
         long space = (long) Math.pow(dim, 6);
         if (space > Integer.MAX_VALUE) {
             throw new RuntimeException("Too many types " + dim + " - max allowed " + (int) (Math.exp(Math.log(Integer.MAX_VALUE) / 6.)));
@@ -38,14 +36,8 @@ public class Ngrams6 {
         int p3 = -1;
         int p4 = -1;
         int p5 = -1;
-        for (Token token : tokens) {
-            if (removeSpaces && token.type == Token.Type.OTHER) {
-                continue;
-            }
-            if (token.type == Token.Type.NEW_LINE) {
-                continue;
-            }
-            int p6 = token.cIndex;
+        for (int i = 0; i < corpus.length(); i++) {
+            int p6 = corpus.symbol(i);
             if (p1 != -1 && p2 != -1 && p3 != -1 && p4 != -1 && p5 != -1 && p6 != -1) {
                 stats[index(p1, p2, p3, p4, p5, p6, dim)]++;
             }
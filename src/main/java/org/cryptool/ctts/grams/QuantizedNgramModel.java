@@ -0,0 +1,62 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+// Dense table with 16-bit values (a quarter of the memory of DenseNgramModel). Values are stored as
+// round(value / step), with step = max / 65535, so each n-gram value is off by at most step / 2 (see maxError()).
+// The score is 1000 * (average n-gram value) / ic, so it is off by at most 1000 * maxError() / ic, i.e. the relative
+// error is at most maxError() / (average n-gram value) - in practice below 1e-4 for the bundled languages.
+public final class QuantizedNgramModel extends NgramModel {
+
+    private static final int LEVELS = Character.MAX_VALUE;
+
+    final char[] stats;
+    final double step;
+
+    QuantizedNgramModel(int n, int dim, char[] stats, double step) {
+        super(n, dim);
+        this.stats = stats;
+        this.step = step;
+    }
+
+    public static QuantizedNgramModel quantize(int n, int dim, double[] stats) {
+        double max = 0;
+        for (double val : stats) {
+            max = Math.max(max, val);
+        }
+        double step = max == 0 ? 1.0 : max / LEVELS;
+        char[] quantized = new char[stats.length];
+        for (int i = 0; i < stats.length; i++) {
+            quantized[i] = (char) Math.round(stats[i] / step);
+        }
+        return new QuantizedNgramModel(n, dim, quantized, step);
+    }
+
+    @Override
+    public double value(long code) {
+        return stats[(int) code] * step;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 2L * stats.length;
+    }
+
+    public double maxError() {
+        return step / 2;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+// Value of one n-gram window of the ciphertext under a key - the innermost operation of the SA moves. Chosen once per
+// model by of(), with one class per n, so the call site in IncrementalScorer stays monomorphic and the JIT inlines the
+// straight-line body (no loop over n, one branch for the unassigned/separator checks) into the move loop.
+public interface Scorer {
+
+    NgramModel model();
+
+    // Value of the n-gram of cArray ending at position end under the key cToP, or -1 if one of its symbols is a
+    // separator (-1 in cArray) or not assigned (-1 in cToP).
+    double window(int[] cArray, int[] cToP, int end);
+
+    static Scorer of(NgramModel model) {
+        switch (model.n) {
+            case 3:
+                return new Unrolled3(model);
+            case 4:
+                return new Unrolled4(model);
+            case 5:
+                return new Unrolled5(model);
+            case 6:
+                return new Unrolled6(model);
+            case 7:
+                return new Unrolled7(model);
+            case 8:
+                return new Unrolled8(model);
+            default:
+                return loop(model);
+        }
+    }
+
+    // Generic loop over the n symbols, for any n.
+    static Scorer loop(NgramModel model) {
+        return new Loop(model);
+    }
+
+    final class Loop implements Scorer {
+        private final NgramModel model;
+        private final int n;
+        private final int dim;
+
+        Loop(NgramModel model) {
+            this.model = model;
+            this.n = model.n;
+            this.dim = model.dim;
+        }
+
+        @Override
+        public NgramModel model() {
+            return model;
+        }
+
+        @Override
+        public double window(int[] cArray, int[] cToP, int end) {
+            long code = 0;
+            for (int i = end - n + 1; i <= end; i++) {
+                int c = cArray[i];
+                if (c == -1) {
+                    return -1;
+                }
+                int p = cToP[c];
+                if (p == -1) {
+                    return -1;
+                }
+                code = code * dim + p;
+            }
+            return model.value(code);
+        }
+    }
+
+    final class Unrolled3 implements Scorer {
+        private final NgramModel model;
+        private final long dim;
+
+        Unrolled3(NgramModel model) {
+            this.model = model;
+            this.dim = model.dim;
+        }
+
+        @Override
+        public NgramModel model() {
+            return model;
+        }
+
+        @Override
+        public double window(int[] cArray, int[] cToP, int end) {
+            int c0 = cArray[end - 2], c1 = cArray[end - 1], c2 = cArray[end];
+            if ((c0 | c1 | c2) < 0) {
+                return -1;
+            }
+            int p0 = cToP[c0], p1 = cToP[c1], p2 = cToP[c2];
+            if ((p0 | p1 | p2) < 0) {
+                return -1;
+            }
+            return model.value(((long) p0 * dim + p1) * dim + p2);
+        }
+    }
+
+    final class Unrolled4 implements Scorer {
+        private final NgramModel model;
+        private final long dim;
+
+        Unrolled4(NgramModel model) {
+            this.model = model;
+            this.dim = model.dim;
+        }
+
+        @Override
+        public NgramModel model() {
+            return model;
+        }
+
+        @Override
+        public double window(int[] cArray, int[] cToP, int end) {
+            int c0 = cArray[end - 3], c1 = cArray[end - 2], c2 = cArray[end - 1], c3 = cArray[end];
+            if ((c0 | c1 | c2 | c3) < 0) {
+                return -1;
+            }
+            int p0 = cToP[c0], p1 = cToP[c1], p2 = cToP[c2], p3 = cToP[c3];
+            if ((p0 | p1 | p2 | p3) < 0) {
+                return -1;
+            }
+            return model.value((((long) p0 * dim + p1) * dim + p2) * dim + p3);
+        }
+    }
+
+    final class Unrolled5 implements Scorer {
+        private final NgramModel model;
+        private final long dim;
+
+        Unrolled5(NgramModel model) {
+            this.model = model;
+            this.dim = model.dim;
+        }
+
+        @Override
+        public NgramModel model() {
+            return model;
+        }
+
+        @Override
+        public double window(int[] cArray, int[] cToP, int end) {
+            int c0 = cArray[end - 4], c1 = cArray[end - 3], c2 = cArray[end - 2], c3 = cArray[end - 1],
+                    c4 = cArray[end];
+            if ((c0 | c1 | c2 | c3 | c4) < 0) {
+                return -1;
+            }
+            int p0 = cToP[c0], p1 = cToP[c1], p2 = cToP[c2], p3 = cToP[c3], p4 = cToP[c4];
+            if ((p0 | p1 | p2 | p3 | p4) < 0) {
+                return -1;
+            }
+            return model.value(((((long) p0 * dim + p1) * dim + p2) * dim + p3) * dim + p4);
+        }
+    }
+
+    final class Unrolled6 implements Scorer {
+        private final NgramModel model;
+        private final long dim;
+
+        Unrolled6(NgramModel model) {
+            this.model = model;
+            this.dim = model.dim;
+        }
+
+        @Override
+        public NgramModel model() {
+            return model;
+        }
+
+        @Override
+        public double window(int[] cArray, int[] cToP, int end) {
+            int c0 = cArray[end - 5], c1 = cArray[end - 4], c2 = cArray[end - 3], c3 = cArray[end - 2],
+                    c4 = cArray[end - 1], c5 = cArray[end];
+            if ((c0 | c1 | c2 | c3 | c4 | c5) < 0) {
+                return -1;
+            }
+            int p0 = cToP[c0], p1 = cToP[c1], p2 = cToP[c2], p3 = cToP[c3], p4 = cToP[c4], p5 = cToP[c5];
+            if ((p0 | p1 | p2 | p3 | p4 | p5) < 0) {
+                return -1;
+            }
+            return model.value((((((long) p0 * dim + p1) * dim + p2) * dim + p3) * dim + p4) * dim + p5);
+        }
+    }
+
+    final class Unrolled7 implements Scorer {
+        private final NgramModel model;
+        private final long dim;
+
+        Unrolled7(NgramModel model) {
+            this.model = model;
+            this.dim = model.dim;
+        }
+
+        @Override
+        public NgramModel model() {
+            return model;
+        }
+
+        @Override
+        public double window(int[] cArray, int[] cToP, int end) {
+            int c0 = cArray[end - 6], c1 = cArray[end - 5], c2 = cArray[end - 4], c3 = cArray[end - 3],
+                    c4 = cArray[end - 2], c5 = cArray[end - 1], c6 = cArray[end];
+            if ((c0 | c1 | c2 | c3 | c4 | c5 | c6) < 0) {
+                return -1;
+            }
+            int p0 = cToP[c0], p1 = cToP[c1], p2 = cToP[c2], p3 = cToP[c3],
+                    p4 = cToP[c4], p5 = cToP[c5], p6 = cToP[c6];
+            if ((p0 | p1 | p2 | p3 | p4 | p5 | p6) < 0) {
+                return -1;
+            }
+            return model.value(((((((long) p0 * dim + p1) * dim + p2) * dim + p3) * dim + p4) * dim + p5) * dim + p6);
+        }
+    }
+
+    final class Unrolled8 implements Scorer {
+        private final NgramModel model;
+        private final long dim;
+
+        Unrolled8(NgramModel model) {
+            this.model = model;
+            this.dim = model.dim;
+        }
+
+        @Override
+        public NgramModel model() {
+            return model;
+        }
+
+        @Override
+        public double window(int[] cArray, int[] cToP, int end) {
+            int c0 = cArray[end - 7], c1 = cArray[end - 6], c2 = cArray[end - 5], c3 = cArray[end - 4],
+                    c4 = cArray[end - 3], c5 = cArray[end - 2], c6 = cArray[end - 1], c7 = cArray[end];
+            if ((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) < 0) {
+                return -1;
+            }
+            int p0 = cToP[c0], p1 = cToP[c1], p2 = cToP[c2], p3 = cToP[c3],
+                    p4 = cToP[c4], p5 = cToP[c5], p6 = cToP[c6], p7 = cToP[c7];
+            if ((p0 | p1 | p2 | p3 | p4 | p5 | p6 | p7) < 0) {
+                return -1;
+            }
+            return model.value((((((((long) p0 * dim + p1) * dim + p2) * dim + p3)
+                    * dim + p4) * dim + p5) * dim + p6) * dim + p7);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+    Copyright 2023 George Lasry & CrypTool 2 Team
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package org.cryptool.ctts.grams;
+
+import java.util.Arrays;
+
+// Open-addressing (linear probing) hash table from n-gram codes to values, holding only the n-grams seen in the
+// reference text. Memory grows with the number of distinct n-grams instead of dim^n, so it also works for large
+// alphabets and higher orders, where dim^n overflows an int.
+public final class SparseNgramModel extends NgramModel {
+
+    static final long EMPTY = -1;
+    private static final int MIN_CAPACITY = 1 << 10;
+
+    long[] keys;
+    double[] values;
+    int mask;
+    int size;
+
+    SparseNgramModel(int n, int dim, int expected) {
+        super(n, dim);
+        if (Math.pow(dim, n) >= Long.MAX_VALUE) {
+            throw new RuntimeException("Too many types " + dim + " for " + n + "-grams");
+        }
+        allocate(capacityFor(expected));
+    }
+
+    public static SparseNgramModel stats(Corpus corpus, int n) {
+        return stats(corpus, n, 1);
+    }
+
+    // Only keeps the n-grams seen at least minCount times, the others then have the same value (0) as unseen ones.
+    // For 7- and 8-grams most distinct n-grams are seen only once, so pruning shrinks the table several times,
+    // which keeps the lookups mostly in cache.
+    public static SparseNgramModel stats(Corpus corpus, int n, int minCount) {
+        final int dim = corpus.dim();
+        SparseNgramModel model = new SparseNgramModel(n, dim, MIN_CAPACITY);
+        final long top = (long) Math.pow(dim, n - 1);
+        long code = 0;
+        int valid = 0;
+        for (int i = 0; i < corpus.length(); i++) {
+            int p = corpus.symbol(i);
+            if (p == Corpus.SPACE) {
+                valid = 0;
+                code = 0;
+                continue;
+            }
+            code = (code % top) * dim + p;
+            if (++valid >= n) {
+                model.add(code, 1);
+            }
+        }
+        if (minCount > 1) {
+            model = model.pruned(minCount);
+        }
+        model.logValues();
+        return model;
+    }
+
+    private SparseNgramModel pruned(int minCount) {
+        int kept = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && values[slot] >= minCount) {
+                kept++;
+            }
+        }
+        SparseNgramModel pruned = new SparseNgramModel(n, dim, kept);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && values[slot] >= minCount) {
+                pruned.add(keys[slot], values[slot]);
+            }
+        }
+        return pruned;
+    }
+
+    @Override
+    public double value(long code) {
+        int slot = slot(code);
+        long[] keys = this.keys;
+        while (true) {
+            long key = keys[slot];
+            if (key == code) {
+                return values[slot];
+            }
+            if (key == EMPTY) {
+                return 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 16L * keys.length;
+    }
+
+    void add(long code, double delta) {
+        int slot = slot(code);
+        while (true) {
+            long key = keys[slot];
+            if (key == code) {
+                values[slot] += delta;
+                return;
+            }
+            if (key == EMPTY) {
+                keys[slot] = code;
+                values[slot] = delta;
+                if (++size > (keys.length >> 1)) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    void logValues() {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                values[slot] = 10_000.0 * Math.log(1 + values[slot]);
+            }
+        }
+    }
+
+    private int slot(long code) {
+        return slot(code, mask);
+    }
+
+    static int slot(long code, int mask) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                add(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2L * expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
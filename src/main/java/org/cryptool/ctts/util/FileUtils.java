@@ -179,7 +179,7 @@ public class FileUtils {
         }
     }
 
-    static boolean isAbsolutePath(String filepath) {
+    public static boolean isAbsolutePath(String filepath) {
         return filepath.startsWith("/") || filepath.startsWith("\\") || filepath.matches("[A-Z]:[/\\\\].*");
     }
 